@@ -0,0 +1,307 @@
+package org.example.processing;
+
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
+
+
+/**
+ * Generates a {@code <PageObject>Locators} class for every page object with {@code @FindBy} fields. The generated class holds a {@code By}
+ * constant per field and an {@code initElements} method which assigns lazily located elements to the fields, replacing the reflection
+ * and dynamic proxies of {@code PageFactory.initElements}. Since the generated class assigns the fields directly, they must not be private
+ *
+ * @author l.milov
+ */
+@SupportedAnnotationTypes(PageObjectProcessor.FIND_BY)
+public class PageObjectProcessor extends AbstractProcessor
+{
+
+    static final String FIND_BY = "org.openqa.selenium.support.FindBy";
+
+    private static final String CACHE_LOOKUP = "org.openqa.selenium.support.CacheLookup";
+    private static final String WEB_ELEMENT = "org.openqa.selenium.WebElement";
+    private static final String WEB_ELEMENT_LIST = "java.util.List<org.openqa.selenium.WebElement>";
+    private static final String SUFFIX = "Locators";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv)
+    {
+        final Map<TypeElement, List<VariableElement>> fieldsByClass = new LinkedHashMap<>();
+        for (final TypeElement annotation : annotations)
+        {
+            for (final Element element : roundEnv.getElementsAnnotatedWith(annotation))
+            {
+                if (element.getKind() == ElementKind.FIELD)
+                {
+                    fieldsByClass.computeIfAbsent((TypeElement)element.getEnclosingElement(), k -> new ArrayList<>()).add((VariableElement)element);
+                }
+            }
+        }
+        fieldsByClass.forEach(this::generateLocators);
+        // Other processors may still be interested in the annotation
+        return false;
+    }
+
+
+    /**
+     * Generates the locators class for a single page object
+     *
+     * @param pageObject the page object class
+     * @param fields the {@code @FindBy} fields of the page object
+     */
+    private void generateLocators(final TypeElement pageObject, final List<VariableElement> fields)
+    {
+        final String packageName = getPackage(pageObject).getQualifiedName().toString();
+        final String pageObjectName = pageObject.getSimpleName().toString();
+        final String className = pageObjectName + SUFFIX;
+
+        final StringBuilder constants = new StringBuilder();
+        final StringBuilder assignments = new StringBuilder();
+        for (final VariableElement field : fields)
+        {
+            final String fieldName = field.getSimpleName().toString();
+            final String byExpression = getByExpression(field);
+            if (byExpression == null || !isAssignable(field))
+            {
+                continue;
+            }
+            final String constantName = toConstantName(fieldName);
+            final String factoryMethod = WEB_ELEMENT_LIST.equals(field.asType().toString()) ? "createList" : "create";
+            constants.append(String.format("    static final By %s = %s;%n", constantName, byExpression));
+            assignments.append(String.format("        screen.%s = LocatingWebElement.%s(searchContext, timeOutInSeconds, %s, %s, \"%s.%s\");%n",
+                                             fieldName,
+                                             factoryMethod,
+                                             constantName,
+                                             field.getAnnotationMirrors().stream().anyMatch(a -> isOfType(a, CACHE_LOOKUP)),
+                                             pageObjectName,
+                                             fieldName));
+        }
+
+        final String source = (packageName.isEmpty() ? "" : "package " + packageName + ";\n\n\n")
+                              + "import org.example.util.LocatingWebElement;\n"
+                              + "import org.openqa.selenium.By;\n"
+                              + "import org.openqa.selenium.SearchContext;\n\n\n"
+                              + "/**\n"
+                              + " * Locators of {@link " + pageObjectName + "}. Generated from its {@code @FindBy} fields by {@code "
+                              + getClass().getName() + "}, do not edit\n"
+                              + " */\n"
+                              + "final class " + className + "\n"
+                              + "{\n\n"
+                              + constants
+                              + "\n    private " + className + "()\n    {\n    }\n\n\n"
+                              + "    /**\n"
+                              + "     * Assigns lazily located elements to all {@code @FindBy} fields of the given page object\n"
+                              + "     *\n"
+                              + "     * @param screen the page object\n"
+                              + "     * @param searchContext the context in which the elements are searched (usually the driver)\n"
+                              + "     * @param timeOutInSeconds the maximum time to wait for an element to appear\n"
+                              + "     */\n"
+                              + "    static void initElements(final " + pageObjectName + " screen, final SearchContext searchContext, "
+                              + "final int timeOutInSeconds)\n"
+                              + "    {\n"
+                              + assignments
+                              + "    }\n"
+                              + "}\n";
+        try (Writer writer = processingEnv.getFiler()
+                                          .createSourceFile(packageName.isEmpty() ? className : packageName + "." + className, pageObject)
+                                          .openWriter())
+        {
+            writer.write(source);
+        }
+        catch (final IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not generate " + className + ": " + e.getMessage(), pageObject);
+        }
+    }
+
+
+    /**
+     * Checks if the generated class can assign the given field, reporting an error otherwise
+     */
+    private boolean isAssignable(final VariableElement field)
+    {
+        final Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL))
+        {
+            error(field, "@FindBy fields must not be private, static or final, as they are assigned by the generated locators class");
+            return false;
+        }
+        final String type = field.asType().toString();
+        if (!WEB_ELEMENT.equals(type) && !WEB_ELEMENT_LIST.equals(type))
+        {
+            error(field, "@FindBy fields must be of type WebElement or List<WebElement>");
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Builds the Java expression creating the {@code By} described by the {@code @FindBy} annotation of a field
+     *
+     * @return the expression, or {@code null} if the annotation does not describe exactly one locator
+     */
+    private String getByExpression(final VariableElement field)
+    {
+        final AnnotationMirror findBy = field.getAnnotationMirrors().stream().filter(a -> isOfType(a, FIND_BY)).findFirst().orElse(null);
+        if (findBy == null)
+        {
+            return null;
+        }
+        final List<String> expressions = new ArrayList<>();
+        String how = null;
+        String using = null;
+        for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : findBy.getElementValues().entrySet())
+        {
+            final String attribute = entry.getKey().getSimpleName().toString();
+            final Object value = entry.getValue().getValue();
+            switch (attribute)
+            {
+                case "how":
+                    how = ((VariableElement)value).getSimpleName().toString();
+                    break;
+                case "using":
+                    using = (String)value;
+                    break;
+                default:
+                    final String expression = getByExpression(attribute, (String)value);
+                    if (expression != null)
+                    {
+                        expressions.add(expression);
+                    }
+            }
+        }
+        if (how != null && !"UNSET".equals(how) && using != null)
+        {
+            expressions.add(getByExpression(how, using));
+        }
+        if (expressions.size() != 1 || expressions.get(0) == null)
+        {
+            error(field, "@FindBy must define exactly one supported locator");
+            return null;
+        }
+        return expressions.get(0);
+    }
+
+
+    /**
+     * @param how the name of a {@code @FindBy} attribute or a {@code How} constant
+     * @param using the locator value
+     * @return the expression creating the matching {@code By}, or {@code null} if the attribute is not supported
+     */
+    private static String getByExpression(final String how, final String using)
+    {
+        final String literal = toLiteral(using);
+        switch (how)
+        {
+            case "id":
+            case "ID":
+                return "By.id(" + literal + ")";
+            case "name":
+            case "NAME":
+                return "By.name(" + literal + ")";
+            case "className":
+            case "CLASS_NAME":
+                return "By.className(" + literal + ")";
+            case "css":
+            case "CSS":
+                return "By.cssSelector(" + literal + ")";
+            case "tagName":
+            case "TAG_NAME":
+                return "By.tagName(" + literal + ")";
+            case "linkText":
+            case "LINK_TEXT":
+                return "By.linkText(" + literal + ")";
+            case "partialLinkText":
+            case "PARTIAL_LINK_TEXT":
+                return "By.partialLinkText(" + literal + ")";
+            case "xpath":
+            case "XPATH":
+                return "By.xpath(" + literal + ")";
+            case "ID_OR_NAME":
+                return "new org.openqa.selenium.support.ByIdOrName(" + literal + ")";
+            default:
+                return null;
+        }
+    }
+
+
+    private static boolean isOfType(final AnnotationMirror annotation, final String type)
+    {
+        return type.equals(annotation.getAnnotationType().toString());
+    }
+
+
+    private static PackageElement getPackage(final Element element)
+    {
+        Element current = element;
+        while (!(current instanceof PackageElement))
+        {
+            current = current.getEnclosingElement();
+        }
+        return (PackageElement)current;
+    }
+
+
+    private static String toConstantName(final String fieldName)
+    {
+        return fieldName.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase();
+    }
+
+
+    private static String toLiteral(final String value)
+    {
+        final StringBuilder literal = new StringBuilder("\"");
+        for (final char c : value.toCharArray())
+        {
+            switch (c)
+            {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                default:
+                    literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+
+    private void error(final Element element, final String message)
+    {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
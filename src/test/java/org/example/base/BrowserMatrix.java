@@ -0,0 +1,122 @@
+package org.example.base;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.example.misc.Browser;
+import org.example.misc.GenericTestError;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+
+
+/**
+ * A suite runner which runs every class given in {@link Suite.SuiteClasses} once per configured browser, all at the same time. The
+ * browsers are taken from the {@code browsers} system property (comma separated, e.g. {@code -Dbrowsers=CHROME,FIREFOX}) and default to all
+ * {@link Browser}s. Each class/browser pair runs in its own thread with its own driver. How many of them run at the same time is limited
+ * by the available sessions, see {@link TestBase#initializeDriver()}
+ *
+ * @author l.milov
+ */
+public class BrowserMatrix extends Suite
+{
+
+    public BrowserMatrix(final Class<?> klass, final RunnerBuilder builder) throws InitializationError
+    {
+        super(klass, createRunners(klass, builder));
+        setScheduler(new ConcurrentScheduler("browser-matrix"));
+    }
+
+
+    /**
+     * @return the browsers configured by the {@code browsers} system property, or all browsers if the property is not set
+     */
+    public static List<Browser> getConfiguredBrowsers()
+    {
+        final String browsers = System.getProperty("browsers");
+        if (StringUtils.isBlank(browsers))
+        {
+            return Arrays.asList(Browser.values());
+        }
+        return Arrays.stream(StringUtils.split(browsers, ','))
+                     .map(String::trim)
+                     .map(name ->
+                     {
+                         final Browser browser = Browser.fromName(name);
+                         if (browser == null)
+                         {
+                             throw new GenericTestError(String.format("Unknown browser [%s] in the 'browsers' property", name));
+                         }
+                         return browser;
+                     })
+                     .distinct()
+                     .collect(Collectors.toList());
+    }
+
+
+    private static List<Runner> createRunners(final Class<?> klass, final RunnerBuilder builder) throws InitializationError
+    {
+        final SuiteClasses suiteClasses = klass.getAnnotation(SuiteClasses.class);
+        if (suiteClasses == null)
+        {
+            throw new InitializationError(String.format("Class '%s' must have a SuiteClasses annotation", klass.getName()));
+        }
+        final List<Runner> runners = new ArrayList<>();
+        for (final Browser browser : getConfiguredBrowsers())
+        {
+            for (final Class<?> testClass : suiteClasses.value())
+            {
+                runners.add(new BrowserRunner(browser, builder.safeRunnerForClass(testClass)));
+            }
+        }
+        return runners;
+    }
+
+    /**
+     * Runs a test class against a single browser, by assigning the browser to the thread running the class
+     */
+    private static class BrowserRunner extends Runner
+    {
+        private final Browser browser;
+        private final Runner delegate;
+
+        BrowserRunner(final Browser browser, final Runner delegate)
+        {
+            this.browser = browser;
+            this.delegate = delegate;
+        }
+
+
+        @Override
+        public Description getDescription()
+        {
+            final Description delegateDescription = delegate.getDescription();
+            final Description description = Description.createSuiteDescription(String.format("[%s] %s", browser.getName(),
+                                                                                             delegateDescription.getDisplayName()));
+            delegateDescription.getChildren().forEach(description::addChild);
+            return description;
+        }
+
+
+        @Override
+        public void run(final RunNotifier notifier)
+        {
+            TestBase.setMatrixBrowser(browser);
+            try
+            {
+                delegate.run(notifier);
+            }
+            finally
+            {
+                TestBase.setMatrixBrowser(null);
+            }
+        }
+    }
+}
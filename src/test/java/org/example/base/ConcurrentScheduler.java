@@ -0,0 +1,129 @@
+package org.example.base;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.example.misc.Browser;
+import org.example.misc.GenericTestError;
+import org.junit.runners.model.RunnerScheduler;
+
+
+/**
+ * Runs the children of a runner concurrently, each on its own thread, and waits for all of them to finish. The threads are virtual when
+ * the tests run on a JDK which has them (21 or newer), otherwise platform daemon threads. The number of threads is not limited here -
+ * how many children actually run at the same time is limited by the available sessions (see {@link TestBase#initializeDriver()}), so a
+ * child waiting for a session only costs a parked thread. The browser assigned to the scheduling thread is passed to the children
+ *
+ * @author l.milov
+ */
+class ConcurrentScheduler implements RunnerScheduler
+{
+
+    private final ExecutorService executor;
+    private final List<Future<?>> futures = new ArrayList<>();
+
+    ConcurrentScheduler(final String threadName)
+    {
+        this.executor = newThreadPerTaskExecutor(threadName);
+    }
+
+
+    @Override
+    public void schedule(final Runnable childStatement)
+    {
+        final Browser browser = TestBase.getMatrixBrowser();
+        futures.add(executor.submit(() ->
+        {
+            TestBase.setMatrixBrowser(browser);
+            try
+            {
+                childStatement.run();
+            }
+            finally
+            {
+                TestBase.setMatrixBrowser(null);
+            }
+        }));
+    }
+
+
+    @Override
+    public void finished()
+    {
+        try
+        {
+            for (final Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (final ExecutionException e)
+        {
+            throw new GenericTestError(String.format("A concurrent run failed unexpectedly: %s", e.getCause()));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * @return {@code true} if the JDK running the tests supports virtual threads, {@code false} otherwise
+     */
+    static boolean isVirtualThreadsSupported()
+    {
+        try
+        {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        }
+        catch (final NoSuchMethodException e)
+        {
+            return false;
+        }
+    }
+
+
+    /**
+     * Creates an executor which starts a new thread for each task. The project is compiled for Java 8, so the virtual thread API is only
+     * accessed through reflection
+     */
+    private static ExecutorService newThreadPerTaskExecutor(final String threadName)
+    {
+        if (isVirtualThreadsSupported())
+        {
+            try
+            {
+                // Thread.ofVirtual().name(threadName, 0).factory(), through the public Thread.Builder interface
+                final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                final Object namedBuilder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadName + "-", 0L);
+                final ThreadFactory threadFactory = (ThreadFactory)builderType.getMethod("factory").invoke(namedBuilder);
+                return (ExecutorService)Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory);
+            }
+            catch (final ReflectiveOperationException | RuntimeException e)
+            {
+                // Fall back to platform threads
+            }
+        }
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable ->
+        {
+            final Thread thread = new Thread(runnable, threadName + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,337 @@
+package org.example.base;
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.StringUtils;
+import org.awaitility.Awaitility;
+import org.awaitility.core.ConditionTimeoutException;
+import org.example.misc.Browser;
+import org.example.screens.OnlineCurrencyExchangeCalculatorScreen;
+import org.example.util.AttachmentSink;
+import org.example.util.Elements;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * Converts a fixed 'Sell' amount for every pair of the given currencies on the 'Currency exchange calculator'. The pairs are shared by up
+ * to {@code sweep.sessions} (4 by default) sessions: the session of the calling test and as many additional sessions as are free at the
+ * start, see {@link TestBase#tryOpenSession(Browser)}. Each session loads the page once and then only selects the currencies (with a
+ * single script per menu, see {@link OnlineCurrencyExchangeCalculatorScreen#selectSellCurrency(String)}) and filters. If the table was
+ * not seen loading after filtering, the 'Buy' amount only counts once it has changed from the one of the previous pair, otherwise the
+ * pair is reported as unverified. Results are passed to a listener and appended to {@code currency-pair-sweep.jsonl} next to the Allure
+ * results as soon as they are known, see {@link this#getResultsFile()}
+ *
+ * @author l.milov
+ */
+public class CurrencyPairSweep
+{
+
+    private static final int SESSIONS = Integer.getInteger("sweep.sessions", 4);
+    private static final int FILTER_TIMEOUT_IN_SECONDS = 30;
+    private static final Duration BUY_AMOUNT_CHANGE_TIMEOUT = Duration.ofSeconds(5);
+    private static final By SERVER_ERROR_POPUP = By.xpath("//span[text()='Server error']");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Queue<String[]> pendingPairs = new ConcurrentLinkedQueue<>();
+    private final List<PairResult> results = new ArrayList<>();
+    private final String amount;
+    private final Consumer<PairResult> listener;
+    private BufferedWriter writer;
+
+    private CurrencyPairSweep(final String amount, final Consumer<PairResult> listener)
+    {
+        this.amount = amount;
+        this.listener = listener;
+    }
+
+
+    /**
+     * Runs the sweep and waits until all pairs have been converted
+     *
+     * @param driver the driver of the calling test, used as the first session
+     * @param currencies the currency codes, every ordered pair of two different currencies is converted
+     * @param amount the 'Sell' amount
+     * @param listener called for each result, as soon as it is known. Calls are not concurrent
+     * @return the results of all pairs, in the order they were finished
+     */
+    public static List<PairResult> run(final WebDriver driver, final List<String> currencies, final String amount,
+                                       final Consumer<PairResult> listener)
+    {
+        Objects.requireNonNull(driver, "Parameter [driver] cannot be null");
+        final CurrencyPairSweep sweep = new CurrencyPairSweep(amount, listener);
+        currencies.forEach(from -> currencies.stream()
+                                             .filter(to -> !to.equals(from))
+                                             .forEach(to -> sweep.pendingPairs.add(new String[] {from, to})));
+        final Browser browser = TestBase.getBrowser();
+        final ConcurrentScheduler scheduler = new ConcurrentScheduler("sweep");
+        scheduler.schedule(() -> sweep.convertPendingPairs(driver, 0));
+        for (int i = 1; i < SESSIONS; i++)
+        {
+            final int session = i;
+            scheduler.schedule(() ->
+            {
+                final WebDriver sessionDriver = TestBase.tryOpenSession(browser);
+                if (sessionDriver != null)
+                {
+                    try
+                    {
+                        sweep.convertPendingPairs(sessionDriver, session);
+                    }
+                    finally
+                    {
+                        TestBase.closeSession(sessionDriver);
+                    }
+                }
+            });
+        }
+        try
+        {
+            scheduler.finished();
+        }
+        finally
+        {
+            sweep.closeWriter();
+        }
+        // Pairs left by sessions which broke down, and no other session could take
+        String[] pair;
+        while ((pair = sweep.pendingPairs.poll()) != null)
+        {
+            sweep.publish(new PairResult(pair[0], pair[1], null, "No session left to convert the pair", 0, -1));
+        }
+        return Collections.unmodifiableList(sweep.results);
+    }
+
+
+    /**
+     * @return the file to which the results of the last sweep are written, one JSON object per line
+     */
+    public static Path getResultsFile()
+    {
+        return AttachmentSink.getResultsDir().resolveSibling("currency-pair-sweep.jsonl");
+    }
+
+
+    /**
+     * Converts pairs until none are left. A session which has broken down stops taking pairs, the rest are left to the other sessions
+     */
+    private void convertPendingPairs(final WebDriver driver, final int session)
+    {
+        final OnlineCurrencyExchangeCalculatorScreen calculatorScreen = new OnlineCurrencyExchangeCalculatorScreen(driver);
+        calculatorScreen.toScreen();
+        calculatorScreen.waitForExchangeRateTableToLoad();
+        calculatorScreen.fillSellField(amount, true);
+        String[] pair;
+        while ((pair = pendingPairs.poll()) != null)
+        {
+            final long start = System.nanoTime();
+            try
+            {
+                calculatorScreen.selectSellCurrency(pair[0]);
+                calculatorScreen.selectBuyCurrency(pair[1]);
+                final String previousBuyAmount = Elements.getValue(calculatorScreen.getBuyTextField());
+                final boolean isVerified = calculatorScreen.submitFilter(FILTER_TIMEOUT_IN_SECONDS)
+                                           || isBuyAmountChanged(calculatorScreen, previousBuyAmount);
+                final String buyAmount = Elements.getValue(calculatorScreen.getBuyTextField());
+                final String error = Elements.isVisible(SERVER_ERROR_POPUP, driver) ? "A 'Server error' popup was shown"
+                                     : StringUtils.isBlank(buyAmount) ? "No 'Buy' amount was calculated"
+                                     : !isVerified ? String.format("Unverified: the table was not seen loading and the 'Buy' amount [%s] is "
+                                                                   + "still the one of the previous pair", buyAmount)
+                                     : null;
+                publish(new PairResult(pair[0], pair[1], buyAmount, error, (System.nanoTime() - start) / 1_000_000, session));
+            }
+            catch (final WebDriverException e)
+            {
+                publish(new PairResult(pair[0], pair[1], null, e.getClass().getSimpleName() + ": " + StringUtils.substringBefore(e.getMessage(), "\n"),
+                                       (System.nanoTime() - start) / 1_000_000, session));
+                return;
+            }
+            catch (final RuntimeException e)
+            {
+                publish(new PairResult(pair[0], pair[1], null, e.getClass().getSimpleName() + ": " + e.getMessage(),
+                                       (System.nanoTime() - start) / 1_000_000, session));
+            }
+        }
+    }
+
+
+    /**
+     * Waits a while for the 'Buy' amount to change, for a filter after which the table was not seen loading (e.g. it has loaded before
+     * the loading indicator was polled)
+     *
+     * @return {@code true} if the 'Buy' amount differs from the given previous one, {@code false} if it has not changed in time
+     */
+    private static boolean isBuyAmountChanged(final OnlineCurrencyExchangeCalculatorScreen calculatorScreen, final String previousBuyAmount)
+    {
+        try
+        {
+            Awaitility.await()
+                      .atMost(BUY_AMOUNT_CHANGE_TIMEOUT)
+                      .pollInterval(Duration.ofMillis(100))
+                      .until(() -> !StringUtils.equals(Elements.getValue(calculatorScreen.getBuyTextField()), previousBuyAmount));
+            return true;
+        }
+        catch (final ConditionTimeoutException e)
+        {
+            return false;
+        }
+    }
+
+
+    private synchronized void publish(final PairResult result)
+    {
+        results.add(result);
+        try
+        {
+            if (writer == null)
+            {
+                final Path file = getResultsFile();
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            }
+            writer.write(result.toJson());
+            writer.newLine();
+            writer.flush();
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("Could not write the sweep results", e);
+        }
+        if (listener != null)
+        {
+            listener.accept(result);
+        }
+    }
+
+
+    private synchronized void closeWriter()
+    {
+        if (writer != null)
+        {
+            try
+            {
+                writer.close();
+            }
+            catch (final IOException e)
+            {
+                // The results have already been flushed
+            }
+        }
+    }
+
+    /**
+     * The conversion of a single currency pair
+     */
+    public static class PairResult
+    {
+        private final String sellCurrency;
+        private final String buyCurrency;
+        private final String buyAmount;
+        private final String error;
+        private final long durationInMillis;
+        private final int session;
+
+        PairResult(final String sellCurrency, final String buyCurrency, final String buyAmount, final String error, final long durationInMillis,
+                   final int session)
+        {
+            this.sellCurrency = sellCurrency;
+            this.buyCurrency = buyCurrency;
+            this.buyAmount = buyAmount;
+            this.error = error;
+            this.durationInMillis = durationInMillis;
+            this.session = session;
+        }
+
+
+        public String getSellCurrency()
+        {
+            return sellCurrency;
+        }
+
+
+        public String getBuyCurrency()
+        {
+            return buyCurrency;
+        }
+
+
+        /**
+         * @return the calculated 'Buy' amount, {@code null} if the conversion failed
+         */
+        public String getBuyAmount()
+        {
+            return buyAmount;
+        }
+
+
+        /**
+         * @return the reason the conversion failed, {@code null} if it succeeded
+         */
+        public String getError()
+        {
+            return error;
+        }
+
+
+        public long getDurationInMillis()
+        {
+            return durationInMillis;
+        }
+
+
+        /**
+         * @return the index of the session which converted the pair, -1 if it was not converted
+         */
+        public int getSession()
+        {
+            return session;
+        }
+
+
+        private String toJson()
+        {
+            final Map<String, Object> json = new LinkedHashMap<>();
+            json.put("sell", sellCurrency);
+            json.put("buy", buyCurrency);
+            json.put("buyAmount", buyAmount);
+            json.put("error", error);
+            json.put("durationMillis", durationInMillis);
+            json.put("session", session);
+            try
+            {
+                return MAPPER.writeValueAsString(json);
+            }
+            catch (final JsonProcessingException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s -> %s: %s", sellCurrency, buyCurrency, error == null ? buyAmount : error);
+        }
+    }
+}
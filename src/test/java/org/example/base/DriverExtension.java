@@ -0,0 +1,199 @@
+package org.example.base;
+
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.example.misc.Browser;
+import org.example.misc.GenericTestError;
+import org.example.util.Toolbox;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.junit.runners.model.TestTimedOutException;
+import org.openqa.selenium.WebDriver;
+
+
+/**
+ * The JUnit 5 counterpart of {@link TestBase}: opens one session per test class (waiting for a free session like the JUnit 4 tests do)
+ * and injects its {@link WebDriver} into the test methods, test factories and lifecycle methods which declare it as a parameter. The
+ * session is closed when the class has finished. As the JUnit Platform may run the methods of a class on different threads, the driver
+ * is passed explicitly instead of through the thread-bound {@link TestBase#getDriver()}; methods sharing it have to be serialized with
+ * a {@link org.junit.jupiter.api.parallel.ResourceLock} on the session of their class.
+ * <p>
+ * Test methods, test factories and dynamic tests get the same treatment as the rules of {@link TestBase} give the JUnit 4 tests: they run
+ * under the {@link Watchdog}, with an empty {@link org.example.util.CommandTrace} which is attached to the report (along with a screenshot)
+ * if they fail, and the tests are tagged with the used browser and network profile. For the duration of the call, the thread shares the
+ * state of the session (see {@link TestThreadState}), so the watchdog can abort and replace the session when the deadline expires
+ *
+ * @author l.milov
+ */
+public class DriverExtension implements BeforeAllCallback, ParameterResolver, InvocationInterceptor
+{
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(DriverExtension.class);
+
+    @Override
+    public void beforeAll(final ExtensionContext context)
+    {
+        final Browser browser = Browser.fromName(System.getProperty("browser"));
+        if (browser == null)
+        {
+            throw new GenericTestError("No browser property set. Please specify the browser you want to use for the test by adding the '-Dbrowser=' argument");
+        }
+        context.getStore(NAMESPACE).getOrComputeIfAbsent(Session.class, type -> new Session(browser), Session.class);
+    }
+
+
+    @Override
+    public boolean supportsParameter(final ParameterContext parameterContext, final ExtensionContext extensionContext)
+    {
+        return parameterContext.getParameter().getType() == WebDriver.class;
+    }
+
+
+    @Override
+    public Object resolveParameter(final ParameterContext parameterContext, final ExtensionContext extensionContext)
+    {
+        return getSession(extensionContext).state.driver;
+    }
+
+
+    @Override
+    public void interceptTestMethod(final Invocation<Void> invocation, final ReflectiveInvocationContext<Method> invocationContext,
+                                    final ExtensionContext extensionContext) throws Throwable
+    {
+        runGuarded(invocation, extensionContext, true);
+    }
+
+
+    @Override
+    public <T> T interceptTestFactoryMethod(final Invocation<T> invocation, final ReflectiveInvocationContext<Method> invocationContext,
+                                            final ExtensionContext extensionContext) throws Throwable
+    {
+        // The factory loads the page, its dynamic tests are reported (and tagged) on their own
+        return runGuarded(invocation, extensionContext, false);
+    }
+
+
+    @Override
+    public void interceptDynamicTest(final Invocation<Void> invocation, final ExtensionContext extensionContext) throws Throwable
+    {
+        runGuarded(invocation, extensionContext, true);
+    }
+
+
+    /**
+     * Runs an invocation on the state of the session of its class, under the watchdog, and reports the command trace of the session if
+     * the invocation fails
+     */
+    private static <T> T runGuarded(final Invocation<T> invocation, final ExtensionContext context, final boolean isTest) throws Throwable
+    {
+        final Session session = getSession(context);
+        final Description description = Description.createTestDescription(context.getRequiredTestClass().getName(), context.getDisplayName());
+        final AtomicReference<T> result = new AtomicReference<>();
+        final Statement statement = new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                result.set(invocation.proceed());
+            }
+        };
+        final TestThreadState previous = TestThreadState.get();
+        TestThreadState.bind(session.state);
+        try
+        {
+            session.state.commandTrace.clear();
+            if (isTest)
+            {
+                TestBase.tagBrowser();
+                TestBase.tagNetwork();
+            }
+            new Watchdog(Watchdog.DEADLINE_IN_SECONDS).apply(statement, description).evaluate();
+            return result.get();
+        }
+        catch (final Throwable t)
+        {
+            reportFailure(TestThreadState.get(), description, t);
+            throw t;
+        }
+        finally
+        {
+            // The watchdog gives the thread a copy of the state when it abandons a hung call, the session goes on with the copy
+            session.state = TestThreadState.get();
+            TestThreadState.bind(previous);
+        }
+    }
+
+
+    private static void reportFailure(final TestThreadState state, final Description description, final Throwable failure)
+    {
+        state.commandTrace.attachToReport();
+        // After a timeout the session has been replaced, there is nothing to see in the new one
+        if (state.driver != null && !(failure instanceof TestTimedOutException))
+        {
+            try
+            {
+                Toolbox.takeScreenshot(state.driver, description);
+            }
+            catch (final RuntimeException e)
+            {
+                // The session may be gone, e.g. after a timeout
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+
+    private static Session getSession(final ExtensionContext context)
+    {
+        // The store of a method falls back to the store of its class
+        final Session session = context.getStore(NAMESPACE).get(Session.class, Session.class);
+        if (session == null)
+        {
+            throw new GenericTestError("The session is opened in a @BeforeAll callback, it cannot be used by a constructor");
+        }
+        return session;
+    }
+
+    /**
+     * A session, closed by JUnit together with the store of its class. It keeps its own {@link TestThreadState}, shared by the threads
+     * running the methods of the class, so that its commands are recorded in its own trace
+     */
+    private static class Session implements ExtensionContext.Store.CloseableResource
+    {
+        private volatile TestThreadState state = new TestThreadState();
+
+        Session(final Browser browser)
+        {
+            final TestThreadState previous = TestThreadState.get();
+            TestThreadState.bind(state);
+            try
+            {
+                state.driver = TestBase.openSession(browser);
+            }
+            finally
+            {
+                TestThreadState.bind(previous);
+            }
+        }
+
+
+        @Override
+        public void close()
+        {
+            final WebDriver driver = state.driver;
+            state.driver = null;
+            if (driver != null)
+            {
+                TestBase.closeSession(driver);
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.example.base;
+
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.remote.service.DriverService;
+
+
+/**
+ * Keeps track of the driver processes (chromedriver, geckodriver) of the local sessions, so that a session which no longer responds can
+ * be ended without going through the driver - quitting it would hang just like the command it is stuck on. The processes are found
+ * through {@code /proc} (Linux only), elsewhere only the driver service is stopped
+ *
+ * @author l.milov
+ */
+final class DriverProcess
+{
+
+    private static final Path PROC = Paths.get("/proc");
+    private static final long KILL_TIMEOUT_IN_SECONDS = 5;
+
+    /** The services of the local drivers, by the driver they were started for */
+    private static final Map<WebDriver, DriverService> services = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private DriverProcess()
+    {
+    }
+
+
+    /**
+     * @param driver a local driver
+     * @param service the service the driver was started with
+     * @return the given driver
+     */
+    static <T extends WebDriver> T register(final T driver, final DriverService service)
+    {
+        services.put(driver, service);
+        return driver;
+    }
+
+
+    /**
+     * Forgets the service of a driver, once the driver has been quit
+     *
+     * @param driver the driver, possibly wrapped
+     */
+    static void unregister(final WebDriver driver)
+    {
+        for (WebDriver current = driver; current != null; current = unwrap(current))
+        {
+            services.remove(current);
+        }
+    }
+
+
+    /**
+     * Kills the driver process of a local session, along with the browser it has started. Any command the session is stuck on fails
+     *
+     * @param driver the driver, possibly wrapped
+     * @return {@code true} if the driver was a local one, {@code false} otherwise
+     */
+    static boolean kill(final WebDriver driver)
+    {
+        final DriverService service = findService(driver);
+        if (service == null)
+        {
+            return false;
+        }
+        unregister(driver);
+        final String pid = findPid(service);
+        if (pid != null)
+        {
+            final List<String> command = new ArrayList<>();
+            command.add("kill");
+            command.add("-KILL");
+            command.addAll(getProcessTree(pid));
+            try
+            {
+                new ProcessBuilder(command).redirectErrorStream(true).start().waitFor(KILL_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+            }
+            catch (final IOException e)
+            {
+                // No 'kill' command, the service is stopped below
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        service.stop();
+        return true;
+    }
+
+
+    /**
+     * @param driver the driver of a local session, possibly wrapped
+     * @return the process ID of its driver process, {@code null} if it is not a local session or the process cannot be found
+     */
+    static String findPid(final WebDriver driver)
+    {
+        final DriverService service = findService(driver);
+        return service == null ? null : findPid(service);
+    }
+
+
+    /**
+     * @param pid a process ID
+     * @return the process and all of its descendants, empty if {@code /proc} is not available
+     */
+    static List<String> getProcessTree(final String pid)
+    {
+        if (!Files.isDirectory(PROC))
+        {
+            return Collections.emptyList();
+        }
+        final Map<String, List<String>> children = new HashMap<>();
+        for (final String child : listProcesses())
+        {
+            final String[] stat = readStat(child);
+            if (stat != null)
+            {
+                children.computeIfAbsent(stat[1], parent -> new ArrayList<>()).add(child);
+            }
+        }
+        final List<String> tree = new ArrayList<>();
+        final List<String> pending = new ArrayList<>(Collections.singletonList(pid));
+        while (!pending.isEmpty())
+        {
+            final String current = pending.remove(pending.size() - 1);
+            tree.add(current);
+            pending.addAll(children.getOrDefault(current, Collections.emptyList()));
+        }
+        return tree;
+    }
+
+
+    /**
+     * @return the process ID of the test JVM
+     */
+    static String getJvmPid()
+    {
+        return StringUtils.substringBefore(ManagementFactory.getRuntimeMXBean().getName(), "@");
+    }
+
+
+    /**
+     * @return the fields of {@code /proc/<pid>/stat} after the command name, starting with the state (the parent process ID is at index 1),
+     *         or {@code null} if the process has exited in the meantime
+     */
+    static String[] readStat(final String pid)
+    {
+        try
+        {
+            final String stat = new String(Files.readAllBytes(PROC.resolve(pid).resolve("stat")), StandardCharsets.US_ASCII);
+            // The command name is in parentheses and may contain spaces
+            return StringUtils.split(StringUtils.substringAfterLast(stat, ")").trim(), ' ');
+        }
+        catch (final IOException e)
+        {
+            return null;
+        }
+    }
+
+
+    /**
+     * @return the IDs of all running processes, empty if {@code /proc} is not available
+     */
+    static List<String> listProcesses()
+    {
+        final List<String> pids = new ArrayList<>();
+        if (!Files.isDirectory(PROC))
+        {
+            return pids;
+        }
+        try (Stream<Path> processes = Files.list(PROC))
+        {
+            processes.map(path -> path.getFileName().toString()).filter(StringUtils::isNumeric).forEach(pids::add);
+        }
+        catch (final IOException e)
+        {
+            // Reported as no processes
+        }
+        return pids;
+    }
+
+
+    /**
+     * The driver process is the descendant of the test JVM which listens on the port of the service
+     */
+    private static String findPid(final DriverService service)
+    {
+        final String portArgument = "--port=" + service.getUrl().getPort();
+        for (final String pid : getProcessTree(getJvmPid()))
+        {
+            try
+            {
+                final String commandLine = new String(Files.readAllBytes(PROC.resolve(pid).resolve("cmdline")), StandardCharsets.US_ASCII);
+                // The arguments are separated (and terminated) by NUL characters
+                if (commandLine.contains('\0' + portArgument + '\0'))
+                {
+                    return pid;
+                }
+            }
+            catch (final IOException e)
+            {
+                // The process has exited in the meantime
+            }
+        }
+        return null;
+    }
+
+
+    private static DriverService findService(final WebDriver driver)
+    {
+        for (WebDriver current = driver; current != null; current = unwrap(current))
+        {
+            final DriverService service = services.get(current);
+            if (service != null)
+            {
+                return service;
+            }
+        }
+        return null;
+    }
+
+
+    private static WebDriver unwrap(final WebDriver driver)
+    {
+        return driver instanceof WrapsDriver ? ((WrapsDriver)driver).getWrappedDriver() : null;
+    }
+}
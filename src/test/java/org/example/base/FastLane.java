@@ -0,0 +1,162 @@
+package org.example.base;
+
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.example.misc.NonVisual;
+import org.example.util.LocalProxy;
+import org.junit.AssumptionViolatedException;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.model.Status;
+
+
+/**
+ * Runs the tests marked with {@link NonVisual} on an in-process HtmlUnit driver (with JavaScript enabled) instead of a real browser, when
+ * the {@code fast.lane} system property is set. The page objects get the HtmlUnit driver through {@link TestBase#getDriver()}, so they
+ * work unchanged. A test which fails on HtmlUnit (e.g. because it uses a feature HtmlUnit does not support) is run again in the real
+ * browser, and keeps running there for the rest of the run. In this mode the real browser session of a class is only opened once a test
+ * needs it, so classes whose tests all pass on HtmlUnit never start a browser
+ *
+ * @author l.milov
+ */
+class FastLane implements TestRule
+{
+
+    private static final boolean ENABLED = Boolean.getBoolean("fast.lane");
+
+    /** The tests which have failed on HtmlUnit during the run */
+    private static final Set<String> unsupportedTests = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @return {@code true} if the fast lane is enabled, {@code false} otherwise
+     */
+    static boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+
+    @Override
+    public Statement apply(final Statement base, final Description description)
+    {
+        if (!ENABLED)
+        {
+            return base;
+        }
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                if (isNonVisual(description) && !unsupportedTests.contains(description.getDisplayName()))
+                {
+                    try
+                    {
+                        Allure.step("Run the test on the DOM-only driver");
+                        runWith(getDomDriver(), base);
+                        return;
+                    }
+                    catch (final AssumptionViolatedException e)
+                    {
+                        throw e;
+                    }
+                    catch (final Throwable e)
+                    {
+                        if (TestThreadState.get().isTimedOut)
+                        {
+                            // Failed because the watchdog has stopped it, there is no time left to run it again
+                            throw e;
+                        }
+                        unsupportedTests.add(description.getDisplayName());
+                        Allure.step(String.format("The test failed on the DOM-only driver with %s (%s), running it again in the browser",
+                                                  e.getClass().getSimpleName(), StringUtils.substringBefore(e.getMessage(), "\n")),
+                                    Status.BROKEN);
+                    }
+                }
+                TestBase.ensureDriver();
+                runWith(null, base);
+            }
+        };
+    }
+
+
+    /**
+     * Quits the HtmlUnit driver of the current thread, if it has one
+     */
+    static void release()
+    {
+        final WebDriver driver = TestThreadState.get().domDriver;
+        TestThreadState.get().domDriver = null;
+        TestThreadState.get().lastUsedDriver = null;
+        if (driver != null)
+        {
+            try
+            {
+                driver.quit();
+            }
+            catch (final WebDriverException e)
+            {
+                // Nothing left to release
+            }
+        }
+    }
+
+
+    private static void runWith(final WebDriver laneDriver, final Statement base) throws Throwable
+    {
+        TestBase.setLaneDriver(laneDriver);
+        try
+        {
+            // The state left by the previous test belongs to the page of another driver
+            final WebDriver driver = TestBase.getDriver();
+            if (driver != TestThreadState.get().lastUsedDriver)
+            {
+                ScreenStateTracker.reset();
+                TestThreadState.get().lastUsedDriver = driver;
+            }
+            base.evaluate();
+        }
+        finally
+        {
+            TestBase.setLaneDriver(null);
+        }
+    }
+
+
+    private static boolean isNonVisual(final Description description)
+    {
+        return description.getAnnotation(NonVisual.class) != null
+               || description.getTestClass() != null && description.getTestClass().isAnnotationPresent(NonVisual.class);
+    }
+
+
+    /**
+     * @return the HtmlUnit driver of the current thread, created on the first call. It uses the {@link LocalProxy} when it is enabled
+     */
+    private static WebDriver getDomDriver()
+    {
+        if (TestThreadState.get().domDriver == null)
+        {
+            final HtmlUnitDriver driver = new HtmlUnitDriver(BrowserVersion.CHROME, true);
+            if (LocalProxy.isEnabled())
+            {
+                driver.setProxySettings(LocalProxy.getInstance().toSeleniumProxy());
+            }
+            driver.manage().timeouts().setScriptTimeout(10, TimeUnit.SECONDS);
+            TestThreadState.get().domDriver = TestBase.withCommandTrace(driver);
+        }
+        return TestThreadState.get().domDriver;
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.base;
+
+
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.internal.runners.statements.RunAfters;
+import org.junit.internal.runners.statements.RunBefores;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.notification.StoppedByUserException;
+import org.junit.runners.Parameterized;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+
+/**
+ * A {@link Parameterized} runner which runs all rows at the same time, each on its own (virtual, when available) thread, see
+ * {@link ConcurrentScheduler}. The {@code @BeforeClass}/{@code @AfterClass} methods run once per row on the thread of the row, instead of
+ * once for the whole class, so that every row gets its own session from {@link TestBase#initializeDriver()}. The number of rows running
+ * at the same time is limited by the available sessions only
+ *
+ * @author l.milov
+ */
+public class ParallelParameterized extends Parameterized
+{
+
+    public ParallelParameterized(final Class<?> klass) throws Throwable
+    {
+        super(klass);
+        setScheduler(new ConcurrentScheduler("parameterized-row"));
+    }
+
+
+    @Override
+    protected Statement withBeforeClasses(final Statement statement)
+    {
+        // Run per row, see runChild
+        return statement;
+    }
+
+
+    @Override
+    protected Statement withAfterClasses(final Statement statement)
+    {
+        // Run per row, see runChild
+        return statement;
+    }
+
+
+    @Override
+    protected void runChild(final Runner runner, final RunNotifier notifier)
+    {
+        final List<FrameworkMethod> befores = getTestClass().getAnnotatedMethods(BeforeClass.class);
+        final List<FrameworkMethod> afters = getTestClass().getAnnotatedMethods(AfterClass.class);
+        final Statement row = new Statement()
+        {
+            @Override
+            public void evaluate()
+            {
+                runner.run(notifier);
+            }
+        };
+        try
+        {
+            new RunAfters(new RunBefores(row, befores, null), afters, null).evaluate();
+        }
+        catch (final StoppedByUserException e)
+        {
+            throw e;
+        }
+        catch (final Throwable e)
+        {
+            // The row could not get a session (or could not release it) - report it as a failure of the row
+            notifier.fireTestFailure(new Failure(runner.getDescription(), e));
+        }
+    }
+}
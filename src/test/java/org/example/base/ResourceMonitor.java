@@ -0,0 +1,259 @@
+package org.example.base;
+
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.example.util.AttachmentSink;
+import org.example.util.SessionHub;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import io.qameta.allure.Allure;
+
+
+/**
+ * Samples the resources used by the browsers after each test. Enabled with the {@code resource.monitor} system property. Two kinds of
+ * measurements are taken:
+ * <ul>
+ * <li>the resident memory and the CPU time of the driver process of the current session and of the browser it has started, read from
+ * {@code /proc} (Linux only, and only for local sessions - the columns stay empty elsewhere and when the {@link SessionHub} is enabled)</li>
+ * <li>the JS heap (Chrome only) and the number of DOM nodes of the current session, read through {@code executeScript}</li>
+ * </ul>
+ * When a threshold is passed, the session of the current thread is recycled before the next test of the thread starts, so that a failure
+ * to replace it is reported by the test which needs the new session rather than by the one which has passed. A tab of a
+ * session shared by several tabs (see {@link TabMultiplexer}) is replaced with a new tab. If it is the browser which has grown too much
+ * (its processes are shared by all tabs), the session first stops taking new tabs, so the new tab and the tabs replaced after it move to
+ * another session, and the old one is closed with its last tab. The thresholds are {@code monitor.max.rss.mb} (2048 by default), {@code monitor.max.heap.mb} (512) and {@code monitor.max.dom.nodes}
+ * (50000). All samples are written to {@code resource-samples.csv} next to the Allure results
+ *
+ * @author l.milov
+ */
+public class ResourceMonitor extends TestWatcher
+{
+
+    private static final boolean ENABLED = Boolean.getBoolean("resource.monitor");
+    private static final long MAX_RSS_IN_MB = Long.getLong("monitor.max.rss.mb", 2048);
+    private static final long MAX_HEAP_IN_MB = Long.getLong("monitor.max.heap.mb", 512);
+    private static final long MAX_DOM_NODES = Long.getLong("monitor.max.dom.nodes", 50_000);
+    /** The units of the values in {@code /proc/[pid]/stat}, read once from {@code getconf} (with the usual x86 values as a fallback) */
+    private static final long PAGE_SIZE = readSystemVariable("PAGESIZE", 4096);
+    private static final long CLOCK_TICKS_PER_SECOND = readSystemVariable("CLK_TCK", 100);
+    private static final String HEADER = "timestamp,thread,test,session,processes,rssMb,cpuMillis,jsHeapMb,domNodes,recycled";
+    private static final String SESSION_SCRIPT =
+        "return [window.performance && window.performance.memory ? window.performance.memory.usedJSHeapSize : null, "
+        + "document.getElementsByTagName('*').length];";
+    private static final long BYTES_IN_MB = 1024 * 1024;
+
+    private static BufferedWriter writer;
+
+
+    /**
+     * @return {@code true} if the resources are being sampled, {@code false} otherwise
+     */
+    public static boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+
+    @Override
+    protected void starting(final Description description)
+    {
+        final TestThreadState state = TestThreadState.get();
+        final WebDriver oversizedDriver = state.oversizedDriver;
+        state.oversizedDriver = null;
+        // The session may have been closed with its class in the meantime
+        if (oversizedDriver != null && oversizedDriver == state.driver)
+        {
+            TestBase.replaceDriver();
+        }
+    }
+
+
+    @Override
+    protected void finished(final Description description)
+    {
+        if (!ENABLED || TestBase.getDriver() == null)
+        {
+            return;
+        }
+        final WebDriver session = TestBase.getDriver();
+        final ProcessSample processes = sampleProcesses(session);
+        Long jsHeap = null;
+        Long domNodes = null;
+        try
+        {
+            final List<?> values = (List<?>)((JavascriptExecutor)session).executeScript(SESSION_SCRIPT);
+            jsHeap = values.get(0) == null ? null : ((Number)values.get(0)).longValue() / BYTES_IN_MB;
+            domNodes = ((Number)values.get(1)).longValue();
+        }
+        catch (final WebDriverException e)
+        {
+            // The session is broken, it will be replaced by the test which needs it
+        }
+
+        final List<String> reasons = new ArrayList<>();
+        final boolean isBrowserTooLarge = processes != null && processes.rssInBytes / BYTES_IN_MB > MAX_RSS_IN_MB;
+        if (isBrowserTooLarge)
+        {
+            reasons.add(String.format("the browser processes of the session use %d MB", processes.rssInBytes / BYTES_IN_MB));
+        }
+        if (jsHeap != null && jsHeap > MAX_HEAP_IN_MB)
+        {
+            reasons.add(String.format("JS heap is %d MB", jsHeap));
+        }
+        if (domNodes != null && domNodes > MAX_DOM_NODES)
+        {
+            reasons.add(String.format("the page has %d DOM nodes", domNodes));
+        }
+
+        write(String.join(",",
+                          String.valueOf(System.currentTimeMillis()),
+                          Thread.currentThread().getName(),
+                          description.getDisplayName().replace(',', ';'),
+                          getSessionId(session),
+                          processes == null ? "" : String.valueOf(processes.count),
+                          processes == null ? "" : String.valueOf(processes.rssInBytes / BYTES_IN_MB),
+                          processes == null ? "" : String.valueOf(processes.cpuInMillis),
+                          jsHeap == null ? "" : String.valueOf(jsHeap),
+                          domNodes == null ? "" : String.valueOf(domNodes),
+                          String.valueOf(!reasons.isEmpty())));
+
+        if (!reasons.isEmpty())
+        {
+            final TabMultiplexer.Tab tab = TabMultiplexer.findTab(session);
+            if (tab == null)
+            {
+                Allure.step(String.format("Recycle the browser session, %s", String.join(", ", reasons)));
+            }
+            else if (isBrowserTooLarge)
+            {
+                // Replacing the tab alone would leave it in the same browser
+                tab.drainSession();
+                Allure.step(String.format("Move the tab to another browser session, %s", String.join(", ", reasons)));
+            }
+            else
+            {
+                Allure.step(String.format("Recycle the tab, %s", String.join(", ", reasons)));
+            }
+            TestThreadState.get().oversizedDriver = session;
+        }
+    }
+
+
+    private static String getSessionId(final WebDriver session)
+    {
+        final WebDriver wrapped = session instanceof WrapsDriver ? ((WrapsDriver)session).getWrappedDriver() : session;
+        return wrapped instanceof RemoteWebDriver ? String.valueOf(((RemoteWebDriver)wrapped).getSessionId()) : "";
+    }
+
+
+    /**
+     * Sums the memory and CPU time of the driver process of a local session and of its descendants (the browser it has started)
+     *
+     * @return the sample, or {@code null} if the session is not a local one or {@code /proc} is not available
+     */
+    private static ProcessSample sampleProcesses(final WebDriver session)
+    {
+        if (SessionHub.isEnabled())
+        {
+            return null;
+        }
+        final String driverPid = DriverProcess.findPid(session);
+        if (driverPid == null)
+        {
+            return null;
+        }
+        final ProcessSample sample = new ProcessSample();
+        for (final String pid : DriverProcess.getProcessTree(driverPid))
+        {
+            final String[] stat = DriverProcess.readStat(pid);
+            if (stat == null)
+            {
+                continue;
+            }
+            sample.count++;
+            // Fields after the command name, starting from 'state' at index 0: ppid is at 1, utime at 11, stime at 12 and rss at 21
+            sample.cpuInMillis += (Long.parseLong(stat[11]) + Long.parseLong(stat[12])) * 1000 / CLOCK_TICKS_PER_SECOND;
+            sample.rssInBytes += Long.parseLong(stat[21]) * PAGE_SIZE;
+        }
+        return sample;
+    }
+
+
+    /**
+     * @return the value of a given system variable, as printed by {@code getconf}, or a given fallback if it cannot be read (e.g. not on
+     *         Linux)
+     */
+    private static long readSystemVariable(final String name, final long fallback)
+    {
+        try
+        {
+            final Process process = new ProcessBuilder("getconf", name).redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII)))
+            {
+                final String value = reader.readLine();
+                return process.waitFor() == 0 && value != null ? Long.parseLong(value.trim()) : fallback;
+            }
+        }
+        catch (final IOException | NumberFormatException e)
+        {
+            return fallback;
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return fallback;
+        }
+    }
+
+
+    private static synchronized void write(final String line)
+    {
+        try
+        {
+            if (writer == null)
+            {
+                final Path file = AttachmentSink.getResultsDir().resolveSibling("resource-samples.csv");
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                final boolean isNew = !Files.exists(file);
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                if (isNew)
+                {
+                    writer.write(HEADER);
+                    writer.newLine();
+                }
+            }
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("Could not write the resource samples", e);
+        }
+    }
+
+
+    private static class ProcessSample
+    {
+        private int count;
+        private long rssInBytes;
+        private long cpuInMillis;
+    }
+}
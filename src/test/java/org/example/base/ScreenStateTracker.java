@@ -0,0 +1,100 @@
+package org.example.base;
+
+
+import java.util.Objects;
+
+import org.example.misc.ScreenState;
+
+
+/**
+ * Keeps track of the state in which the last test has left the page of the current session and the state required by the test that is
+ * about to run. Tests can check {@link this#isNavigationNeeded()} before navigating to their screen
+ *
+ * @author l.milov
+ */
+public class ScreenStateTracker
+{
+
+    private ScreenStateTracker()
+    {
+    }
+
+
+    /**
+     * Checks if the page needs to be (re)loaded for the test that is about to run
+     *
+     * @return {@code false} if the test has declared a {@link ScreenState} that matches the state left by the previous test,
+     *         {@code true} otherwise
+     */
+    public static boolean isNavigationNeeded()
+    {
+        final ScreenState current = TestThreadState.get().currentScreenState;
+        final ScreenState required = TestThreadState.get().requiredScreenState;
+        return current == null || required == null || !isSameState(current, required);
+    }
+
+
+    /**
+     * @return the state declared by the test that is about to run, {@code null} if it did not declare one
+     */
+    public static ScreenState getRequiredState()
+    {
+        return TestThreadState.get().requiredScreenState;
+    }
+
+
+    /**
+     * Forgets the state of the page. Should be called whenever the session is (re)created
+     */
+    public static void reset()
+    {
+        TestThreadState.get().currentScreenState = null;
+        TestThreadState.get().requiredScreenState = null;
+    }
+
+
+    /**
+     * Sets the state required by the test that is about to run
+     *
+     * @param state the declared state of the test, may be {@code null} if the test did not declare one
+     */
+    static void require(final ScreenState state)
+    {
+        TestThreadState.get().requiredScreenState = state;
+    }
+
+
+    /**
+     * Records the state in which a test has left the page
+     *
+     * @param state the declared state of the test which has just finished
+     * @param isPassed {@code true} if the test passed, {@code false} otherwise
+     */
+    static void completed(final ScreenState state, final boolean isPassed)
+    {
+        TestThreadState.get().requiredScreenState = null;
+        if (state != null && state.preserved() && isPassed)
+        {
+            TestThreadState.get().currentScreenState = state;
+        }
+        else
+        {
+            TestThreadState.get().currentScreenState = null;
+        }
+    }
+
+
+    /**
+     * Compares two states, ignoring whether they are preserved or not
+     *
+     * @param first the first state
+     * @param second the second state
+     * @return {@code true} if the states describe the same page, {@code false} otherwise
+     */
+    static boolean isSameState(final ScreenState first, final ScreenState second)
+    {
+        return first.screen() == second.screen()
+               && first.country() == second.country()
+               && Objects.equals(first.filter(), second.filter());
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.base;
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.example.misc.ScreenState;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.Statement;
+
+
+/**
+ * A runner which orders the tests of a class by the {@link ScreenState} they declare, so that tests needing the same page run one after
+ * another. Tests which preserve the state run first inside each group. The declared states are passed to the {@link ScreenStateTracker},
+ * so that tests can skip redundant navigations. Tests without a declared state run last, in their original order
+ *
+ * @author l.milov
+ */
+public class StateOrderedRunner extends BlockJUnit4ClassRunner
+{
+
+    private static final Comparator<FrameworkMethod> BY_STATE =
+        Comparator.comparing((FrameworkMethod method) -> method.getAnnotation(ScreenState.class) == null)
+                  .thenComparing(method -> stateKey(method.getAnnotation(ScreenState.class)))
+                  .thenComparing(method -> !isPreserved(method.getAnnotation(ScreenState.class)));
+
+    public StateOrderedRunner(final Class<?> testClass) throws InitializationError
+    {
+        super(testClass);
+    }
+
+
+    @Override
+    protected List<FrameworkMethod> computeTestMethods()
+    {
+        final List<FrameworkMethod> methods = new ArrayList<>(super.computeTestMethods());
+        methods.sort(BY_STATE);
+        return methods;
+    }
+
+
+    @Override
+    protected Statement methodBlock(final FrameworkMethod method)
+    {
+        final Statement statement = super.methodBlock(method);
+        final ScreenState state = method.getAnnotation(ScreenState.class);
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                ScreenStateTracker.require(state);
+                boolean isPassed = false;
+                try
+                {
+                    statement.evaluate();
+                    isPassed = true;
+                }
+                finally
+                {
+                    ScreenStateTracker.completed(state, isPassed);
+                }
+            }
+        };
+    }
+
+
+    private static String stateKey(final ScreenState state)
+    {
+        return state == null ? "" : String.join("|", state.screen().name(), state.country().name(), state.filter());
+    }
+
+
+    private static boolean isPreserved(final ScreenState state)
+    {
+        return state != null && state.preserved();
+    }
+}
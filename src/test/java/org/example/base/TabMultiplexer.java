@@ -0,0 +1,575 @@
+package org.example.base;
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.example.misc.Browser;
+import org.example.misc.GenericTestError;
+import org.example.util.BrowserStateSnapshot;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.WrapsElement;
+
+
+/**
+ * Hosts several scenarios in one browser session, each in its own tab, when the {@code session.tabs} system property is greater than 1.
+ * A browser session costs hundreds of MB, a tab only a fraction of it, so far more scenarios can run in parallel on the same memory. Each
+ * scenario gets a driver bound to its tab. Every call through it (including the calls on the elements it has found) locks the session for
+ * the duration of that call only, so the commands of the scenarios sharing a session run one at a time, and switches the session to the
+ * window of the tab if another tab was used last. The lock is never held between commands - the waits of a scenario (including the ones
+ * Awaitility polls on a thread of its own) and its sleeps do not hold up the other tabs, at the cost of a tab switch whenever the
+ * commands of two tabs interleave.
+ * <p>
+ * The cookies and the localStorage are shared by the tabs of a browser, so they are swapped along with the tab: the state of the tab which
+ * is left is captured with {@link BrowserStateSnapshot} and the state of the tab which is activated is restored in its place (the
+ * sessionStorage already belongs to the tab). New tabs are opened on the origin the session is on, with an empty state. The swap covers
+ * the origin the tab is on - cookies of other origins stay shared. Frame switches do not survive a switch to another tab, and a tab cannot
+ * switch to other windows.
+ * <p>
+ * The swap is not isolation. The pages of the inactive tabs keep running - their XHRs, timers and sockets go on, with the cookies of
+ * whichever tab is active at the time, and what they write to the cookies or the localStorage ends up in the state of that tab.
+ * Scenarios which depend on their own login or storage must not share a session ({@code session.tabs} of 1 gives each its own browser).
+ * <p>
+ * The sessions are opened with {@link TestBase#openBrowser(Browser, boolean)}, so {@code sessions.max} limits the browsers, each of which
+ * hosts up to {@code session.tabs} scenarios. A tab whose test has timed out is only replaced with a new tab, unless the test is stuck in
+ * a command of the session - then the session can no longer be trusted and is ended (see {@link Watchdog}), the other tabs of the session
+ * fail with it, and new tabs are opened in another session. Quitting the driver of a tab quits the whole session as well. A session which
+ * has grown too much stops taking new tabs, and its tabs move to other sessions as they are replaced (see {@link ResourceMonitor})
+ *
+ * @author l.milov
+ */
+class TabMultiplexer
+{
+
+    private static final int TABS_PER_SESSION = Integer.getInteger("session.tabs", 1);
+    /** How long a new tab may take to show up in the window handles */
+    private static final long OPEN_TAB_TIMEOUT_IN_MILLIS = 5000;
+
+    private static final String OPEN_TAB_SCRIPT = "window.open(arguments[0], '_blank', 'noopener');";
+
+    /** The sessions which still accept tabs, guarded by the class */
+    private static final List<Host> hosts = new ArrayList<>();
+
+    private TabMultiplexer()
+    {
+    }
+
+
+    /**
+     * @return {@code true} if the scenarios share browser sessions, {@code false} otherwise
+     */
+    static boolean isEnabled()
+    {
+        return TABS_PER_SESSION > 1;
+    }
+
+
+    /**
+     * Opens a tab in a session of the given browser which has room for it, or in a new session if there is none
+     *
+     * @param browser the browser of the tab
+     * @param isWaiting {@code true} to wait for a session to become available, {@code false} to give up if all sessions are taken
+     * @return the driver of the tab, recording its commands into the {@link org.example.util.CommandTrace} of the current thread. {@code null}
+     *         if all sessions are full and taken, and {@code isWaiting} is {@code false}
+     */
+    static WebDriver openTab(final Browser browser, final boolean isWaiting)
+    {
+        final Host host = reserveTab(browser);
+        if (host == null)
+        {
+            final WebDriver sessionDriver = TestBase.openBrowser(browser, isWaiting);
+            if (sessionDriver == null)
+            {
+                return null;
+            }
+            final Host newHost = new Host(browser, sessionDriver);
+            synchronized (TabMultiplexer.class)
+            {
+                hosts.add(newHost);
+            }
+            return TestBase.withCommandTrace(newHost.createFirstTab());
+        }
+        try
+        {
+            return TestBase.withCommandTrace(host.createTab());
+        }
+        catch (final RuntimeException e)
+        {
+            releaseTab(host);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Closes the tab of a driver. The session is closed with its last tab
+     *
+     * @param driver the driver of the tab, see {@link this#openTab(Browser, boolean)}
+     */
+    static void closeTab(final WebDriver driver)
+    {
+        final Tab tab = findTab(driver);
+        if (tab == null)
+        {
+            throw new GenericTestError("The driver does not belong to a tab");
+        }
+        tab.close();
+    }
+
+
+    /**
+     * @param driver a {@link WebDriver} instance, possibly wrapping the driver of a tab
+     * @return the tab of the driver, {@code null} if it is not the driver of a tab
+     */
+    static Tab findTab(final WebDriver driver)
+    {
+        WebDriver current = driver;
+        while (current != null)
+        {
+            if (Proxy.isProxyClass(current.getClass()) && Proxy.getInvocationHandler(current) instanceof Tab)
+            {
+                return (Tab)Proxy.getInvocationHandler(current);
+            }
+            current = current instanceof WrapsDriver ? ((WrapsDriver)current).getWrappedDriver() : null;
+        }
+        return null;
+    }
+
+
+    private static synchronized Host reserveTab(final Browser browser)
+    {
+        for (final Host host : hosts)
+        {
+            if (host.browser == browser && host.tabs < TABS_PER_SESSION)
+            {
+                host.tabs++;
+                return host;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Gives up a tab of a session, and closes the session if it was the last one
+     */
+    private static void releaseTab(final Host host)
+    {
+        synchronized (TabMultiplexer.class)
+        {
+            if (--host.tabs > 0)
+            {
+                return;
+            }
+            hosts.remove(host);
+        }
+        try
+        {
+            TestBase.closeBrowser(host.sessionDriver);
+        }
+        catch (final WebDriverException e)
+        {
+            // The session has already been quit
+        }
+    }
+
+
+    /**
+     * Makes sure no new tabs are opened in a session
+     */
+    private static synchronized void retire(final Host host)
+    {
+        hosts.remove(host);
+    }
+
+    /**
+     * A browser session shared by several tabs
+     */
+    private static class Host
+    {
+        private final Browser browser;
+        /** The driver returned by {@link TestBase#openBrowser(Browser, boolean)}, which owns the session permit */
+        private final WebDriver sessionDriver;
+        /** The driver the commands are sent through. The tabs record the commands into the trace of their own thread */
+        private final WebDriver browserDriver;
+        /** Fair, so that no tab waits much longer than the others */
+        private final ReentrantLock lock = new ReentrantLock(true);
+        /** The number of open (or reserved) tabs, guarded by {@link TabMultiplexer} */
+        private int tabs = 1;
+        /** The tab whose window the session is on, guarded by the lock */
+        private Tab activeTab;
+        private volatile boolean isRetired;
+
+        Host(final Browser browser, final WebDriver sessionDriver)
+        {
+            this.browser = browser;
+            this.sessionDriver = sessionDriver;
+            this.browserDriver = sessionDriver instanceof WrapsDriver ? ((WrapsDriver)sessionDriver).getWrappedDriver() : sessionDriver;
+        }
+
+
+        /**
+         * @return the driver of the window the session was opened with
+         */
+        WebDriver createFirstTab()
+        {
+            final Tab tab = new Tab(this, browserDriver.getWindowHandle(), null);
+            activeTab = tab;
+            return tab.getDriver();
+        }
+
+
+        /**
+         * Opens a new tab on the origin of the current page, without switching to it
+         *
+         * @return the driver of the new tab
+         */
+        WebDriver createTab()
+        {
+            acquire();
+            try
+            {
+                final Set<String> knownHandles = browserDriver.getWindowHandles();
+                final String currentUrl = browserDriver.getCurrentUrl();
+                // A lightweight, non-scripted page on the same origin, so that the state of the origin can be set up for the tab
+                final String url = StringUtils.startsWith(currentUrl, "http") ? getOrigin(currentUrl).concat("/robots.txt") : "about:blank";
+                ((JavascriptExecutor)browserDriver).executeScript(OPEN_TAB_SCRIPT, url);
+                final long deadline = System.currentTimeMillis() + OPEN_TAB_TIMEOUT_IN_MILLIS;
+                while (true)
+                {
+                    final Set<String> newHandles = new HashSet<>(browserDriver.getWindowHandles());
+                    newHandles.removeAll(knownHandles);
+                    if (!newHandles.isEmpty())
+                    {
+                        final BrowserStateSnapshot emptyState = url.startsWith("http") ? BrowserStateSnapshot.empty(url) : null;
+                        return new Tab(this, newHandles.iterator().next(), emptyState).getDriver();
+                    }
+                    if (System.currentTimeMillis() > deadline)
+                    {
+                        throw new GenericTestError(String.format("A new tab did not open within %d ms", OPEN_TAB_TIMEOUT_IN_MILLIS));
+                    }
+                    TimeUnit.MILLISECONDS.sleep(50);
+                }
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while opening a tab", e);
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+
+        /**
+         * Takes the session for the current thread, waiting for the calls of the other tabs to finish
+         */
+        void acquire()
+        {
+            try
+            {
+                lock.lockInterruptibly();
+            }
+            catch (final InterruptedException e)
+            {
+                // Interrupted by the watchdog
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while waiting for the session of the tab", e);
+            }
+        }
+
+
+        /**
+         * Switches the session to the window of a tab, swapping the state of the previous tab with the state of the given one. Has to be
+         * called with the lock held
+         */
+        void activate(final Tab tab)
+        {
+            if (activeTab == tab)
+            {
+                return;
+            }
+            if (activeTab != null && !activeTab.isClosed)
+            {
+                try
+                {
+                    activeTab.state = BrowserStateSnapshot.capture(browserDriver);
+                }
+                catch (final WebDriverException e)
+                {
+                    // The page has no storage (e.g. 'about:blank'), the previously captured state still applies
+                }
+            }
+            activeTab = null;
+            browserDriver.switchTo().window(tab.handle);
+            activeTab = tab;
+            if (tab.state != null)
+            {
+                tab.state.restoreInPlace(browserDriver);
+            }
+        }
+
+
+        private static String getOrigin(final String url)
+        {
+            final int pathStart = url.indexOf('/', url.indexOf("://") + 3);
+            return pathStart < 0 ? url : url.substring(0, pathStart);
+        }
+    }
+
+    /**
+     * A tab of a shared session. Handles the calls on the driver of the tab and on all objects obtained through it (elements, options,
+     * target locators, etc...)
+     */
+    static class Tab implements InvocationHandler
+    {
+        private final Host host;
+        private final String handle;
+        private final WebDriver driver;
+        /** The cookies and localStorage of the tab while another tab is active, guarded by the lock of the host */
+        private BrowserStateSnapshot state;
+        private volatile boolean isClosed;
+
+        Tab(final Host host, final String handle, final BrowserStateSnapshot state)
+        {
+            this.host = host;
+            this.handle = handle;
+            this.state = state;
+            this.driver = (WebDriver)createProxy(host.browserDriver, WrapsDriver.class);
+        }
+
+
+        WebDriver getDriver()
+        {
+            return driver;
+        }
+
+
+        /**
+         * @return the driver which owns the session of the tab, see {@link TestBase#openBrowser(Browser, boolean)}
+         */
+        WebDriver getSessionDriver()
+        {
+            return host.sessionDriver;
+        }
+
+
+        /**
+         * Closes the window of the tab and gives up its place in the session. The window is not closed if the session has been quit, or if
+         * this is its last tab - the whole session is closed then
+         */
+        void close()
+        {
+            if (isClosed)
+            {
+                return;
+            }
+            isClosed = true;
+            if (!host.isRetired)
+            {
+                host.acquire();
+                try
+                {
+                    if (host.tabs > 1)
+                    {
+                        host.browserDriver.switchTo().window(handle);
+                        host.activeTab = null;
+                        host.browserDriver.close();
+                    }
+                }
+                catch (final WebDriverException e)
+                {
+                    // The window is already gone
+                }
+                finally
+                {
+                    host.lock.unlock();
+                }
+            }
+            releaseTab(host);
+        }
+
+
+        /**
+         * Makes sure no new tabs are opened in the session of the tab, e.g. because it no longer responds
+         *
+         * @return the driver which owns the session, see {@link TestBase#openBrowser(Browser, boolean)}
+         */
+        WebDriver retireSession()
+        {
+            host.isRetired = true;
+            retire(host);
+            return getSessionDriver();
+        }
+
+
+        /**
+         * Makes sure no new tabs are opened in the session of the tab, e.g. because it has grown too much. The open tabs keep working, the
+         * session is closed with the last of them
+         */
+        void drainSession()
+        {
+            retire(host);
+        }
+
+
+        /**
+         * Quits the whole session, without waiting for the calls of the other tabs - used when the session can no longer be trusted
+         */
+        private void quit()
+        {
+            retireSession();
+            try
+            {
+                host.browserDriver.quit();
+            }
+            catch (final WebDriverException e)
+            {
+                // The session is already gone
+            }
+        }
+
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+        {
+            return invokeInTab(host.browserDriver, method, args);
+        }
+
+
+        /**
+         * Runs a call on the driver of the session, or on an object obtained through it, in the window of the tab
+         */
+        private Object invokeInTab(final Object target, final Method method, final Object[] args) throws Throwable
+        {
+            switch (method.getName())
+            {
+                case "getWrappedDriver":
+                    return target == host.browserDriver ? target : driver;
+                case "getWrappedElement":
+                    return target;
+                case "equals":
+                    return target == host.browserDriver ? args[0] == driver : target.equals(args[0]);
+                case "hashCode":
+                    return target == host.browserDriver ? System.identityHashCode(driver) : target.hashCode();
+                case "toString":
+                    return target == host.browserDriver ? String.format("Tab [%s] of %s", handle, target) : target.toString();
+                default:
+                    break;
+            }
+            if (target == host.browserDriver)
+            {
+                switch (method.getName())
+                {
+                    case "quit":
+                        quit();
+                        return null;
+                    case "close":
+                        close();
+                        return null;
+                    case "getWindowHandles":
+                        return new LinkedHashSet<>(Collections.singleton(handle));
+                    default:
+                        break;
+                }
+            }
+            else if (target instanceof WebDriver.TargetLocator && ("window".equals(method.getName()) || "newWindow".equals(method.getName())))
+            {
+                throw new GenericTestError("The driver of a tab cannot switch to other windows");
+            }
+            if (isClosed)
+            {
+                throw new NoSuchWindowException(String.format("The tab [%s] has been closed", handle));
+            }
+            if (TestThreadState.get().isTimedOut)
+            {
+                // Keeps a test which ignores the interrupt of the watchdog from using the session of the other tabs
+                throw new WebDriverException("The deadline of the test has expired");
+            }
+
+            final Object result;
+            host.acquire();
+            try
+            {
+                host.activate(this);
+                result = method.invoke(target, args);
+            }
+            catch (final InvocationTargetException e)
+            {
+                throw e.getCause();
+            }
+            finally
+            {
+                host.lock.unlock();
+            }
+            return wrap(result, method.getReturnType());
+        }
+
+
+        /**
+         * Wraps the objects which send commands to the session, so that they are run in the window of the tab as well
+         */
+        private Object wrap(final Object result, final Class<?> returnType)
+        {
+            if (result == null)
+            {
+                return null;
+            }
+            if (result == host.browserDriver)
+            {
+                return driver;
+            }
+            if (result instanceof WebElement)
+            {
+                return createProxy(result, WrapsElement.class);
+            }
+            if (result instanceof List)
+            {
+                final List<Object> wrapped = new ArrayList<>();
+                ((List<?>)result).forEach(item -> wrapped.add(item instanceof WebElement ? createProxy(item, WrapsElement.class) : item));
+                return wrapped;
+            }
+            if (returnType.isInterface() && returnType.getName().startsWith("org.openqa.selenium."))
+            {
+                return Proxy.newProxyInstance(TabMultiplexer.class.getClassLoader(), new Class<?>[] {returnType},
+                                              (proxy, method, args) -> invokeInTab(result, method, args));
+            }
+            return result;
+        }
+
+
+        /**
+         * @return a proxy for all interfaces of the target and the given wrapper interface, whose calls are run in the tab
+         */
+        private Object createProxy(final Object target, final Class<?> wrapperType)
+        {
+            final Set<Class<?>> interfaces = new LinkedHashSet<>(ClassUtils.getAllInterfaces(target.getClass()));
+            interfaces.add(wrapperType);
+            if (target == host.browserDriver)
+            {
+                return Proxy.newProxyInstance(TabMultiplexer.class.getClassLoader(), interfaces.toArray(new Class<?>[0]), this);
+            }
+            return Proxy.newProxyInstance(TabMultiplexer.class.getClassLoader(), interfaces.toArray(new Class<?>[0]),
+                                          (proxy, method, args) -> invokeInTab(target, method, args));
+        }
+    }
+}
@@ -1,20 +1,47 @@
 package org.example.base;
 
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.lang3.StringUtils;
 import org.example.misc.Browser;
+import org.example.misc.GenericTestError;
+import org.example.misc.NetworkProfile;
+import org.example.util.CommandTrace;
+import org.example.util.CommandTraceListener;
+import org.example.util.ImpactRecorder;
+import org.example.util.LocalProxy;
+import org.example.util.SessionHub;
+import org.example.util.Toolbox;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WrapsDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.support.events.EventFiringWebDriver;
+
+import io.qameta.allure.Allure;
 
 
 /**
  * Handles generic operations such as creating/destroying the {@link WebDriver} and provides basic functionality,
- * useful in different test classes
+ * useful in different test classes. The driver is bound to the thread running the test class, so that the same classes can run
+ * concurrently against different browsers (see {@link BrowserMatrix})
  *
  * @author l.milov
  */
@@ -24,30 +51,94 @@ public class TestBase
     private static final String CHROME_DRIVER_LOCATION = "D:\\Development\\chromedriver.exe";
     private static final String GECKO_DRIVER_LOCATION = "D:\\Development\\geckodriver.exe";
 
-    private static WebDriver driver;
+    /** The browser cache directories of the local sessions, see {@link this#createLocalDriver(Browser)} */
+    private static final Map<WebDriver, String> browserCacheDirs = Collections.synchronizedMap(new IdentityHashMap<>());
 
     /**
-     * Initializes the driver and sets some basic properties to it (window size, script timeout times, etc...)
+     * Limits the number of sessions open at the same time to {@code sessions.max} - by default the capacity of the remote nodes when
+     * the {@link SessionHub} is enabled, otherwise the number of available cores. Threads waiting for a session stay parked, and the
+     * permits are granted in the order of the requests
      */
-    @BeforeClass
-    public static void initializeDriver()
+    private static final Semaphore sessions = new Semaphore(Integer.getInteger("sessions.max", SessionHub.isEnabled()
+                                                                                                ? SessionHub.getInstance().getCapacity()
+                                                                                                : Runtime.getRuntime().availableProcessors()),
+                                                            true);
+
+    /**
+     * Starts each test with an empty command trace and tags it with the used browser and network profile. The trace is attached to the
+     * report only if the test fails. Also scopes the recording of the {@link ImpactRecorder} to the test
+     */
+    public final TestWatcher commandTraceWatcher = new TestWatcher()
     {
-        if (isBrowserUsed(Browser.CHROME))
+        @Override
+        protected void starting(final Description description)
+        {
+            TestThreadState.get().commandTrace.clear();
+            tagBrowser();
+            tagNetwork();
+            ImpactRecorder.start(description);
+        }
+
+
+        @Override
+        protected void finished(final Description description)
         {
-            System.setProperty(Browser.CHROME.getDriverProperty(), CHROME_DRIVER_LOCATION);
-            driver = new ChromeDriver();
+            ImpactRecorder.stop();
         }
-        else if (isBrowserUsed(Browser.FIREFOX))
+
+
+        @Override
+        protected void failed(final Throwable e, final Description description)
         {
-            System.setProperty(Browser.FIREFOX.getDriverProperty(), GECKO_DRIVER_LOCATION);
-            driver = new FirefoxDriver();
+            TestThreadState.get().commandTrace.attachToReport();
         }
-        else
+    };
+
+    /** Fails tests which do not finish within {@code test.deadline.seconds} (5 minutes by default) and replaces their session */
+    public final Watchdog watchdog = new Watchdog(Watchdog.DEADLINE_IN_SECONDS);
+
+    /** Samples the resources used by the browsers after each test and recycles the session when it grows too much */
+    public final ResourceMonitor resourceMonitor = new ResourceMonitor();
+
+    /** Runs the {@link org.example.misc.NonVisual} tests on a DOM-only driver, when enabled */
+    public final TestRule fastLane = new FastLane();
+
+    /**
+     * Applies the rules above in a fixed order, from the outermost: the watchdog (its deadline covers everything), the resource monitor,
+     * the command trace watcher and the fast lane. The fast lane is the innermost, as it may run the test twice - the test is still tagged
+     * and recorded only once
+     */
+    @Rule
+    public final RuleChain rules = RuleChain.outerRule(watchdog).around(resourceMonitor).around(commandTraceWatcher).around(fastLane);
+
+    /**
+     * Initializes the driver of the current thread, see {@link this#createDriver(Browser)}, waiting until a session is available. Every
+     * command sent through the driver is recorded in the {@link CommandTrace} of the session. When the {@link FastLane} is enabled, the
+     * session is only opened once a test needs it, see {@link this#ensureDriver()}
+     */
+    @BeforeClass
+    public static void initializeDriver()
+    {
+        final Browser browser = getBrowser();
+        if (browser == null)
         {
-            System.out.println("No browser property set. Please specify the browser you want to use for the test by adding the '-Dbrowser=' argument");
+            throw new GenericTestError("No browser property set. Please specify the browser you want to use for the test by adding the '-Dbrowser=' argument");
         }
-        driver.manage().window().maximize();
-        driver.manage().timeouts().setScriptTimeout(10, TimeUnit.SECONDS);
+        if (!FastLane.isEnabled())
+        {
+            // A thread holds a single session - one which was not destroyed is reused, unless it is for another browser
+            final WebDriver existingDriver = TestThreadState.get().driver;
+            if (existingDriver != null && browser != Browser.fromName(Toolbox.getBrowserName(existingDriver)))
+            {
+                TestThreadState.get().driver = null;
+                closeSession(existingDriver);
+            }
+            if (TestThreadState.get().driver == null)
+            {
+                TestThreadState.get().driver = openSession(browser);
+            }
+        }
+        ScreenStateTracker.reset();
     }
 
 
@@ -57,7 +148,196 @@ public class TestBase
     @AfterClass
     public static void destroyDriver()
     {
-        driver.quit();
+        FastLane.release();
+        final WebDriver currentDriver = TestThreadState.get().driver;
+        TestThreadState.get().driver = null;
+        if (currentDriver != null)
+        {
+            closeSession(currentDriver);
+        }
+    }
+
+
+    /**
+     * Opens the session of the current thread if it has not been opened yet, waiting until a session is available
+     */
+    static void ensureDriver()
+    {
+        if (TestThreadState.get().driver == null)
+        {
+            TestThreadState.get().driver = openSession(getBrowser());
+        }
+    }
+
+
+    /**
+     * Waits until a session is available and creates a driver for it, see {@link this#createDriver(Browser)}. The driver is not bound to
+     * the current thread, the caller owns it and has to close it with {@link this#closeSession(WebDriver)}. When the
+     * {@link TabMultiplexer} is enabled, the driver is bound to a tab of a shared session instead
+     *
+     * @param browser the browser for which a driver is created
+     * @return the new driver
+     */
+    static WebDriver openSession(final Browser browser)
+    {
+        return TabMultiplexer.isEnabled() ? TabMultiplexer.openTab(browser, true) : openBrowser(browser, true);
+    }
+
+
+    /**
+     * Same as {@link this#openSession(Browser)}, but does not wait if no session is available
+     *
+     * @param browser the browser for which a driver is created
+     * @return the new driver, or {@code null} if all sessions are taken
+     */
+    static WebDriver tryOpenSession(final Browser browser)
+    {
+        return TabMultiplexer.isEnabled() ? TabMultiplexer.openTab(browser, false) : openBrowser(browser, false);
+    }
+
+
+    /**
+     * Quits a driver created by {@link this#openSession(Browser)} and makes its session available again
+     *
+     * @param sessionDriver the driver to be closed
+     */
+    protected static void closeSession(final WebDriver sessionDriver)
+    {
+        if (TabMultiplexer.findTab(sessionDriver) != null)
+        {
+            TabMultiplexer.closeTab(sessionDriver);
+        }
+        else
+        {
+            closeBrowser(sessionDriver);
+        }
+    }
+
+
+    /**
+     * Takes one of the {@code sessions.max} permits and starts a browser session with it, see {@link this#createDriver(Browser)}
+     *
+     * @param browser the browser for which a driver is created
+     * @param isWaiting {@code true} to wait until a permit is available, {@code false} to give up if all are taken
+     * @return the new driver, or {@code null} if all permits are taken and {@code isWaiting} is {@code false}
+     */
+    static WebDriver openBrowser(final Browser browser, final boolean isWaiting)
+    {
+        if (isWaiting)
+        {
+            sessions.acquireUninterruptibly();
+        }
+        else if (!sessions.tryAcquire())
+        {
+            return null;
+        }
+        try
+        {
+            return createDriver(browser);
+        }
+        catch (final RuntimeException e)
+        {
+            sessions.release();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Quits a driver created by {@link this#openBrowser(Browser, boolean)} and gives its permit back
+     *
+     * @param sessionDriver the driver to be closed
+     */
+    static void closeBrowser(final WebDriver sessionDriver)
+    {
+        try
+        {
+            sessionDriver.quit();
+        }
+        finally
+        {
+            releaseLocalDriver(sessionDriver);
+            sessions.release();
+        }
+    }
+
+
+    /**
+     * Ends a session which may no longer respond, without waiting for it - the driver process of a local session is killed along with its
+     * browser, other sessions are quit on a separate thread. Any command the session is stuck on fails. The driver still has to be closed
+     * (e.g. by {@link this#replaceDriver()}) to give its session back. For the driver of a tab, the whole shared session is ended, and no
+     * new tabs are opened in it
+     *
+     * @param sessionDriver the driver of the session
+     */
+    static void abortSession(final WebDriver sessionDriver)
+    {
+        final TabMultiplexer.Tab tab = TabMultiplexer.findTab(sessionDriver);
+        final WebDriver ownerDriver = tab != null ? tab.retireSession() : sessionDriver;
+        if (!DriverProcess.kill(ownerDriver))
+        {
+            inBackground("quit-session", ownerDriver::quit);
+        }
+    }
+
+
+    /**
+     * Replaces the driver of the current thread with a new one for the same browser. The old session is closed on a separate thread, so
+     * that a session which no longer responds does not hold up the test thread. Used when a session can no longer be trusted, e.g. after
+     * it has hung (see {@link this#abortSession(WebDriver)}), or has grown too much
+     */
+    static void replaceDriver()
+    {
+        final WebDriver oldDriver = TestThreadState.get().driver;
+        if (oldDriver == null)
+        {
+            // Not opened yet (see FastLane), there is nothing to replace
+            return;
+        }
+        TestThreadState.get().driver = null;
+        if (TabMultiplexer.findTab(oldDriver) != null)
+        {
+            inBackground("close-tab", () -> TabMultiplexer.closeTab(oldDriver));
+            TestThreadState.get().driver = TabMultiplexer.openTab(getBrowser(), true);
+        }
+        else
+        {
+            // The new session takes over the permit of the old one
+            inBackground("quit-session", () ->
+            {
+                try
+                {
+                    oldDriver.quit();
+                }
+                finally
+                {
+                    releaseLocalDriver(oldDriver);
+                }
+            });
+            TestThreadState.get().driver = createDriver(getBrowser());
+        }
+        ScreenStateTracker.reset();
+    }
+
+
+    /**
+     * Runs a call on the given session on a daemon thread, ignoring the failures of the session
+     */
+    private static void inBackground(final String name, final Runnable sessionCall)
+    {
+        final Thread thread = new Thread(() ->
+        {
+            try
+            {
+                sessionCall.run();
+            }
+            catch (final WebDriverException e)
+            {
+                // The session is already gone
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
     }
 
 
@@ -66,18 +346,256 @@ public class TestBase
      */
     protected static WebDriver getDriver()
     {
-        return driver;
+        final WebDriver assignedDriver = TestThreadState.get().laneDriver;
+        return assignedDriver != null ? assignedDriver : TestThreadState.get().driver;
+    }
+
+
+    /**
+     * Opens another tab in the browser session of the current test, for tests of the tabs sharing a session (see {@link TabMultiplexer}).
+     * The tab has to be closed with {@link this#closeSession(WebDriver)}
+     *
+     * @return the driver of the new tab, or {@code null} if the sessions are not shared by tabs, or if the session of the test is full
+     */
+    protected static WebDriver openSiblingTab()
+    {
+        if (!TabMultiplexer.isEnabled())
+        {
+            return null;
+        }
+        final WebDriver tabDriver = openSession(getBrowser());
+        if (TabMultiplexer.findTab(tabDriver).getSessionDriver() != TabMultiplexer.findTab(getDriver()).getSessionDriver())
+        {
+            closeSession(tabDriver);
+            return null;
+        }
+        return tabDriver;
+    }
+
+
+    /**
+     * Assigns a driver to the test running on the current thread, in place of the session driver
+     *
+     * @param assignedDriver the driver, or {@code null} to use the session driver again
+     */
+    static void setLaneDriver(final WebDriver assignedDriver)
+    {
+        TestThreadState.get().laneDriver = assignedDriver;
+    }
+
+
+    /**
+     * @return the browser used by the current thread - either the one assigned by {@link BrowserMatrix}, or the one given by the
+     *         {@code browser} system property. {@code null} if neither is set
+     */
+    protected static Browser getBrowser()
+    {
+        final Browser browser = TestThreadState.get().matrixBrowser;
+        return browser != null ? browser : Browser.fromName(System.getProperty("browser"));
     }
 
 
     /**
-     * Checks if a given browser is set to be used, based on the {@code browser} system property
-     * 
-     * @param browser the browser for which a check is performed
-     * @return {@code true} if a match is found between the given browser and the system property, {@code false} otherwise
+     * @return the browser assigned to the current thread in matrix mode, {@code null} if there is none
      */
-    private static boolean isBrowserUsed(final Browser browser)
+    static Browser getMatrixBrowser()
     {
-        return StringUtils.equals(System.getProperty("browser"), browser.getName());
+        return TestThreadState.get().matrixBrowser;
+    }
+
+
+    /**
+     * Assigns a browser to the current thread. Used when running in matrix mode
+     *
+     * @param browser the browser, or {@code null} to fall back to the {@code browser} system property
+     */
+    static void setMatrixBrowser(final Browser browser)
+    {
+        TestThreadState.get().matrixBrowser = browser;
+    }
+
+
+    /**
+     * Creates a new driver for a given browser and sets some basic properties to it (window size, script timeout times, etc...). The
+     * browser is started locally, or on a remote node when the {@link SessionHub} is enabled. The driver records its commands into the
+     * {@link CommandTrace} of the current thread
+     *
+     * @param browser the browser for which a driver is created
+     * @return the new driver
+     */
+    static WebDriver createDriver(final Browser browser)
+    {
+        final WebDriver browserDriver;
+        if (SessionHub.isEnabled())
+        {
+            browserDriver = createRemoteDriver(browser);
+        }
+        else
+        {
+            browserDriver = createLocalDriver(browser);
+        }
+        browserDriver.manage().window().maximize();
+        browserDriver.manage().timeouts().setScriptTimeout(10, TimeUnit.SECONDS);
+        return withCommandTrace(browserDriver);
+    }
+
+
+    /**
+     * @return the given driver, recording its commands into the {@link CommandTrace} of the current thread
+     */
+    static WebDriver withCommandTrace(final WebDriver browserDriver)
+    {
+        return new EventFiringWebDriver(browserDriver).register(new CommandTraceListener(TestThreadState.get().commandTrace));
+    }
+
+
+    /**
+     * Starts the browser with a driver service of its own, so that the driver process can be killed when the session hangs, see
+     * {@link DriverProcess}. When the {@link LocalProxy} is enabled, the browser keeps its disk cache in a directory leased from the proxy,
+     * see {@link LocalProxy#leaseBrowserCacheDir(String)}
+     */
+    private static WebDriver createLocalDriver(final Browser browser)
+    {
+        final String cacheDir = LocalProxy.isEnabled() ? LocalProxy.getInstance().leaseBrowserCacheDir(browser.getName()) : null;
+        try
+        {
+            final WebDriver localDriver;
+            switch (browser)
+            {
+                case CHROME:
+                    System.setProperty(Browser.CHROME.getDriverProperty(), CHROME_DRIVER_LOCATION);
+                    final ChromeDriverService chromeService = ChromeDriverService.createDefaultService();
+                    localDriver = DriverProcess.register(new ChromeDriver(chromeService, createChromeOptions(cacheDir)), chromeService);
+                    break;
+                case FIREFOX:
+                    System.setProperty(Browser.FIREFOX.getDriverProperty(), GECKO_DRIVER_LOCATION);
+                    final GeckoDriverService geckoService = GeckoDriverService.createDefaultService();
+                    localDriver = DriverProcess.register(new FirefoxDriver(geckoService, createFirefoxOptions(cacheDir)), geckoService);
+                    break;
+                default:
+                    throw new GenericTestError(String.format("Browser [%s] is not supported", browser.getName()));
+            }
+            if (cacheDir != null)
+            {
+                browserCacheDirs.put(localDriver, cacheDir);
+            }
+            return localDriver;
+        }
+        catch (final RuntimeException e)
+        {
+            if (cacheDir != null)
+            {
+                LocalProxy.getInstance().releaseBrowserCacheDir(cacheDir);
+            }
+            throw e;
+        }
+    }
+
+
+    /**
+     * Forgets the driver process and gives back the browser cache directory of a local session, once its browser has been quit
+     *
+     * @param sessionDriver the driver, possibly wrapped
+     */
+    private static void releaseLocalDriver(final WebDriver sessionDriver)
+    {
+        DriverProcess.unregister(sessionDriver);
+        for (WebDriver current = sessionDriver; current != null;
+             current = current instanceof WrapsDriver ? ((WrapsDriver)current).getWrappedDriver() : null)
+        {
+            final String cacheDir = browserCacheDirs.remove(current);
+            if (cacheDir != null)
+            {
+                LocalProxy.getInstance().releaseBrowserCacheDir(cacheDir);
+            }
+        }
+    }
+
+
+    /**
+     * Creates the session on one of the remote nodes, through the embedded {@link SessionHub}. Blocks until a node has a free slot
+     */
+    private static WebDriver createRemoteDriver(final Browser browser)
+    {
+        switch (browser)
+        {
+            case CHROME:
+                return new RemoteWebDriver(SessionHub.getInstance().getUrl(), createChromeOptions(null));
+            case FIREFOX:
+                return new RemoteWebDriver(SessionHub.getInstance().getUrl(), createFirefoxOptions(null));
+            default:
+                throw new GenericTestError(String.format("Browser [%s] is not supported", browser.getName()));
+        }
+    }
+
+
+    /**
+     * @param cacheDir the disk cache directory of the session, {@code null} for the default one
+     * @return the Chrome launch options. When the {@link LocalProxy} is enabled, the browser uses it
+     */
+    private static ChromeOptions createChromeOptions(final String cacheDir)
+    {
+        final ChromeOptions options = new ChromeOptions();
+        if (LocalProxy.isEnabled())
+        {
+            options.setProxy(LocalProxy.getInstance().toSeleniumProxy());
+        }
+        if (cacheDir != null)
+        {
+            options.addArguments("--disk-cache-dir=" + cacheDir);
+        }
+        return options;
+    }
+
+
+    /**
+     * @param cacheDir the disk cache directory of the session, {@code null} for the default one
+     * @return the Firefox launch options. When the {@link LocalProxy} is enabled, the browser uses it
+     */
+    private static FirefoxOptions createFirefoxOptions(final String cacheDir)
+    {
+        final FirefoxOptions options = new FirefoxOptions();
+        if (LocalProxy.isEnabled())
+        {
+            options.setProxy(LocalProxy.getInstance().toSeleniumProxy());
+        }
+        if (cacheDir != null)
+        {
+            options.addPreference("browser.cache.disk.parent_directory", cacheDir);
+        }
+        return options;
+    }
+
+
+    /**
+     * Adds the used browser as a parameter of the current Allure test case. In matrix mode, the browser also becomes part of the history
+     * ID, so that the results for the different browsers are not treated as retries of the same test
+     */
+    static void tagBrowser()
+    {
+        final Browser browser = getBrowser();
+        if (browser != null)
+        {
+            Allure.parameter("browser", browser.getName());
+            if (TestThreadState.get().matrixBrowser != null)
+            {
+                Allure.getLifecycle().updateTestCase(result -> result.setHistoryId(result.getHistoryId() + "-" + browser.getName()));
+            }
+        }
+    }
+
+
+    /**
+     * Adds the {@link NetworkProfile} applied by the {@link LocalProxy} as a parameter of the current Allure test case and makes it part of
+     * the history ID, so that the timings under different network conditions are tracked separately
+     */
+    static void tagNetwork()
+    {
+        final NetworkProfile profile = LocalProxy.isEnabled() ? LocalProxy.getInstance().getNetworkProfile() : null;
+        if (profile != null)
+        {
+            Allure.parameter("network", profile.getName());
+            Allure.getLifecycle().updateTestCase(result -> result.setHistoryId(result.getHistoryId() + "-" + profile.getName()));
+        }
     }
 }
@@ -0,0 +1,94 @@
+package org.example.base;
+
+
+import org.example.misc.Browser;
+import org.example.misc.ScreenState;
+import org.example.util.CommandTrace;
+import org.openqa.selenium.WebDriver;
+
+
+/**
+ * The state of a thread running tests - its browser, its session, the state of its page and its fast lane driver. It is kept in one object,
+ * so that the {@link Watchdog} can run a test on a separate thread which shares the state of the thread running the class, and can read
+ * the session the test is using when its deadline expires
+ *
+ * @author l.milov
+ */
+final class TestThreadState
+{
+
+    private static final ThreadLocal<TestThreadState> current = ThreadLocal.withInitial(TestThreadState::new);
+
+    /** The browser assigned by {@link BrowserMatrix}, see {@link TestBase#getBrowser()} */
+    volatile Browser matrixBrowser;
+    /** The session of the thread, see {@link TestBase#getDriver()} */
+    volatile WebDriver driver;
+    /** The driver assigned by the {@link FastLane} to the running test. Takes precedence over the session driver */
+    volatile WebDriver laneDriver;
+    volatile CommandTrace commandTrace = new CommandTrace();
+    /** See {@link ScreenStateTracker} */
+    volatile ScreenState currentScreenState;
+    volatile ScreenState requiredScreenState;
+    /** The HtmlUnit driver kept by the {@link FastLane} for all fast lane tests of the thread */
+    volatile WebDriver domDriver;
+    /** The driver used by the previous test, see {@link FastLane} */
+    volatile WebDriver lastUsedDriver;
+    /** Set by the {@link Watchdog} when the deadline of the running test has expired, so that the test is not run again */
+    volatile boolean isTimedOut;
+    /** The session which the {@link ResourceMonitor} found too large after the previous test, replaced before the next test uses it */
+    volatile WebDriver oversizedDriver;
+
+    TestThreadState()
+    {
+    }
+
+
+    /**
+     * @return the state of the current thread
+     */
+    static TestThreadState get()
+    {
+        return current.get();
+    }
+
+
+    /**
+     * Makes the current thread share a given state, until {@link this#unbind()}
+     *
+     * @param state the state of another thread
+     */
+    static void bind(final TestThreadState state)
+    {
+        current.set(state);
+    }
+
+
+    static void unbind()
+    {
+        current.remove();
+    }
+
+
+    /**
+     * Gives the current thread a copy of its state (not timed out), leaving the original with the threads which still share it (e.g. an abandoned test
+     * thread, which may still change it)
+     *
+     * @return the copy, now bound to the current thread
+     */
+    static TestThreadState detach()
+    {
+        final TestThreadState original = get();
+        final TestThreadState copy = new TestThreadState();
+        copy.matrixBrowser = original.matrixBrowser;
+        copy.driver = original.driver;
+        copy.laneDriver = original.laneDriver;
+        copy.commandTrace = original.commandTrace;
+        copy.currentScreenState = original.currentScreenState;
+        copy.requiredScreenState = original.requiredScreenState;
+        copy.domDriver = original.domDriver;
+        copy.lastUsedDriver = original.lastUsedDriver;
+        copy.oversizedDriver = original.oversizedDriver;
+        bind(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,154 @@
+package org.example.base;
+
+
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.example.util.AttachmentSink;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.junit.runners.model.TestTimedOutException;
+import org.openqa.selenium.WebDriver;
+
+
+/**
+ * Runs each test under a deadline. Like {@link org.junit.internal.runners.statements.FailOnTimeout}, the test runs on a thread of its own,
+ * but that thread shares the state of the thread running the class (its browser, its session, the state of its page, see
+ * {@link TestThreadState}), so the test keeps its driver. When the deadline expires, the stack of the test thread is captured, the
+ * session the test is using at that moment is killed (which unblocks any hung WebDriver call, see {@link TestBase#abortSession(WebDriver)})
+ * and the test thread is interrupted. A session shared with other tabs (see {@link TabMultiplexer}) is only killed if the test thread
+ * is still running {@code watchdog.tab.release.seconds} (3 by default) after it has been interrupted, i.e. if it is stuck in a command of
+ * the session - otherwise only the tab of the test is replaced. The test thread gets {@code watchdog.grace.seconds} (10 by default) to return - if it does not, it
+ * is abandoned along with its copy of the state. Then the diagnostics are attached to the report, the session is replaced with a new one
+ * and the test fails with a {@link TestTimedOutException}
+ *
+ * @author l.milov
+ */
+public class Watchdog implements TestRule
+{
+
+    /** The deadline of the tests, {@code test.deadline.seconds} (5 minutes by default) */
+    static final long DEADLINE_IN_SECONDS = Long.getLong("test.deadline.seconds", 300);
+    private static final long GRACE_IN_SECONDS = Long.getLong("watchdog.grace.seconds", 10);
+    private static final long TAB_RELEASE_IN_SECONDS = Long.getLong("watchdog.tab.release.seconds", 3);
+
+    private final long deadlineInSeconds;
+
+    /**
+     * @param deadlineInSeconds the maximum time a test may take, including its {@code @Before}/{@code @After} methods. {@code 0} or less
+     *            disables the watchdog
+     */
+    public Watchdog(final long deadlineInSeconds)
+    {
+        this.deadlineInSeconds = deadlineInSeconds;
+    }
+
+
+    @Override
+    public Statement apply(final Statement base, final Description description)
+    {
+        if (deadlineInSeconds <= 0)
+        {
+            return base;
+        }
+        return new Statement()
+        {
+            @Override
+            public void evaluate() throws Throwable
+            {
+                final TestThreadState state = TestThreadState.get();
+                final AtomicReference<Throwable> failure = new AtomicReference<>();
+                // The Allure context of the test is inherited by the test thread
+                final Thread testThread = new Thread(() ->
+                {
+                    TestThreadState.bind(state);
+                    try
+                    {
+                        base.evaluate();
+                    }
+                    catch (final Throwable t)
+                    {
+                        failure.set(t);
+                    }
+                    finally
+                    {
+                        TestThreadState.unbind();
+                    }
+                }, Thread.currentThread().getName() + "-test");
+                testThread.setDaemon(true);
+                testThread.start();
+                testThread.join(TimeUnit.SECONDS.toMillis(deadlineInSeconds));
+
+                if (!testThread.isAlive())
+                {
+                    if (failure.get() != null)
+                    {
+                        throw failure.get();
+                    }
+                    return;
+                }
+                String diagnostics = captureDiagnostics(testThread, description);
+                state.isTimedOut = true;
+                // Read only now, as the session may have been opened (or assigned by the fast lane) by the test itself
+                final WebDriver session = TestBase.getDriver();
+                if (session != null && TabMultiplexer.findTab(session) != null)
+                {
+                    // The other tabs would fail with the session, it is only ended if the test does not let go of it
+                    testThread.interrupt();
+                    testThread.join(TimeUnit.SECONDS.toMillis(TAB_RELEASE_IN_SECONDS));
+                }
+                if (testThread.isAlive())
+                {
+                    if (session != null)
+                    {
+                        TestBase.abortSession(session);
+                    }
+                    testThread.interrupt();
+                    testThread.join(TimeUnit.SECONDS.toMillis(GRACE_IN_SECONDS));
+                }
+
+                if (testThread.isAlive())
+                {
+                    // The abandoned thread keeps the original state, it may still change it
+                    TestThreadState.detach().laneDriver = null;
+                    diagnostics += String.format("%nThe test thread did not return within %d s of the deadline and was abandoned", GRACE_IN_SECONDS);
+                }
+                state.isTimedOut = false;
+                AttachmentSink.attachText("Watchdog diagnostics", diagnostics);
+                if (session != null && session == TestThreadState.get().domDriver)
+                {
+                    // The fast lane creates a new DOM-only driver for the next test
+                    TestThreadState.get().domDriver = null;
+                }
+                else if (session != null)
+                {
+                    TestBase.replaceDriver();
+                }
+                final TestTimedOutException timeout = new TestTimedOutException(deadlineInSeconds, TimeUnit.SECONDS);
+                if (failure.get() != null)
+                {
+                    timeout.addSuppressed(failure.get());
+                }
+                throw timeout;
+            }
+        };
+    }
+
+
+    /**
+     * @return a description of where the test thread was when the deadline expired
+     */
+    private static String captureDiagnostics(final Thread testThread, final Description description)
+    {
+        return String.format("Test [%s] did not finish in time. Deadline expired at %s, test thread [%s] state: %s%n%s",
+                             description.getDisplayName(),
+                             LocalTime.now(),
+                             testThread.getName(),
+                             testThread.getState(),
+                             Arrays.stream(testThread.getStackTrace()).map(element -> "\tat " + element).collect(Collectors.joining("\n")));
+    }
+}
@@ -1,6 +1,11 @@
 package org.example.misc;
 
 
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+
+
 /**
  * An enum representing a browser type. Provides basic properties, such as browser name and {@link org.openqa.selenium.WebDriver} related
  * settings
@@ -32,4 +37,16 @@ public enum Browser
     {
         return driverProperty;
     }
+
+
+    /**
+     * Finds a browser by its name, ignoring the case
+     *
+     * @param name the name of the browser (e.g. the value of the {@code browser} system property)
+     * @return the matching browser, or {@code null} if there is no such browser
+     */
+    public static Browser fromName(final String name)
+    {
+        return Arrays.stream(values()).filter(browser -> StringUtils.equalsIgnoreCase(browser.getName(), name)).findFirst().orElse(null);
+    }
 }
@@ -0,0 +1,82 @@
+package org.example.misc;
+
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Network conditions which the {@link org.example.util.LocalProxy} can apply to the traffic of the browsers, so that timings are
+ * comparable between runs and agents. The values follow the presets of the browser developer tools
+ *
+ * @author l.milov
+ */
+public enum NetworkProfile
+{
+    LAN("LAN", 2, 100_000, 100_000, 0),
+    DSL("DSL", 50, 8_000, 1_000, 0),
+    FAST_3G("FAST_3G", 150, 1_600, 750, 0.5),
+    SLOW_3G("SLOW_3G", 400, 400, 400, 1);
+    // Extend if needed...
+
+    final String name;
+    final long latencyInMillis;
+    final long downloadKbps;
+    final long uploadKbps;
+    final double packetLossPercent;
+
+    NetworkProfile(final String name, final long latencyInMillis, final long downloadKbps, final long uploadKbps, final double packetLossPercent)
+    {
+        this.name = name;
+        this.latencyInMillis = latencyInMillis;
+        this.downloadKbps = downloadKbps;
+        this.uploadKbps = uploadKbps;
+        this.packetLossPercent = packetLossPercent;
+    }
+
+
+    public String getName()
+    {
+        return name;
+    }
+
+
+    /**
+     * @return the round trip time, half of it is added in each direction
+     */
+    public long getLatencyInMillis()
+    {
+        return latencyInMillis;
+    }
+
+
+    public long getDownloadKbps()
+    {
+        return downloadKbps;
+    }
+
+
+    public long getUploadKbps()
+    {
+        return uploadKbps;
+    }
+
+
+    public double getPacketLossPercent()
+    {
+        return packetLossPercent;
+    }
+
+
+    /**
+     * Finds a profile by its name, ignoring the case
+     *
+     * @param name the name of the profile (e.g. the value of the {@code network.profile} system property)
+     * @return the matching profile, or {@code null} if there is no such profile
+     */
+    public static NetworkProfile fromName(final String name)
+    {
+        return Arrays.stream(values()).filter(profile -> StringUtils.equalsIgnoreCase(profile.getName(), name)).findFirst().orElse(null);
+    }
+}
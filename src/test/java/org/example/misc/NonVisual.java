@@ -0,0 +1,21 @@
+package org.example.misc;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Marks a test (or all tests of a class) which only checks the DOM - texts, attributes, field values, the URL - and nothing rendered
+ * (screenshots, layout, visibility depending on styles). When the fast lane is enabled, such tests run on an in-process DOM-only driver
+ * instead of a real browser, and are run again in the browser if they fail there, see {@code org.example.base.FastLane}
+ *
+ * @author l.milov
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface NonVisual
+{
+}
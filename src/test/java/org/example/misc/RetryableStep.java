@@ -0,0 +1,42 @@
+package org.example.misc;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.openqa.selenium.ElementClickInterceptedException;
+import org.openqa.selenium.ElementNotInteractableException;
+import org.openqa.selenium.StaleElementReferenceException;
+
+
+/**
+ * Marks an idempotent step of a page object (one that can be executed again without changing its outcome, e.g. filling a field after
+ * clearing it) as safe to retry in the same session when it fails with a transient exception. The retries are done by
+ * {@link org.example.util.StepRetryAspect} and are recorded as Allure steps
+ *
+ * @author l.milov
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RetryableStep
+{
+    /**
+     * @return the maximum number of executions of the step, including the first one
+     */
+    int attempts() default 3;
+
+
+    /**
+     * @return the pause between two executions, in milliseconds
+     */
+    long delayMillis() default 500;
+
+
+    /**
+     * @return the exceptions (and their subclasses) after which the step is retried. Any other exception fails the step immediately
+     */
+    Class<? extends Throwable>[] retryOn() default {StaleElementReferenceException.class, ElementClickInterceptedException.class,
+                                                   ElementNotInteractableException.class};
+}
@@ -0,0 +1,43 @@
+package org.example.misc;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Declares the state of the page that a test needs when it starts. Used by {@link org.example.base.StateOrderedRunner} to group tests
+ * that need the same state and to skip navigations when the previous test has left the page in a compatible state
+ *
+ * @author l.milov
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ScreenState
+{
+    /**
+     * @return the screen on which the test starts
+     */
+    ScreenType screen() default ScreenType.CURRENCY_CALCULATOR;
+
+
+    /**
+     * @return the country (locale) that should be selected on the screen
+     */
+    Country country() default Country.BULGARIA;
+
+
+    /**
+     * @return the filter applied to the screen (e.g. the 'Sell' amount), empty if no filter should be applied
+     */
+    String filter() default "";
+
+
+    /**
+     * @return {@code true} if the test leaves the page in the same state in which it started, {@code false} otherwise. A test which leaves
+     *         values typed in the fields does not preserve the state
+     */
+    boolean preserved() default false;
+}
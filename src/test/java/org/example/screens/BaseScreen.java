@@ -2,14 +2,18 @@ package org.example.screens;
 
 
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WrapsDriver;
 
 
 /**
- * Holds the driver instance which can be used in page objects extending this. Could be extended with basic methods and error handling
+ * Holds the driver instance which can be used in page objects extending this. Could be extended with basic methods and error handling.
+ * Page objects declare their elements as non-private {@code @FindBy} fields, which are assigned by the {@code <PageObject>Locators} class
+ * generated for them at build time (see {@code org.example.processing.PageObjectProcessor}). The driver is exposed through
+ * {@link WrapsDriver}, so that code woven around the page objects (e.g. {@link org.example.util.StepPerformanceAspect}) can reach it
  *
  * @author l.milov
  */
-public class BaseScreen
+public class BaseScreen implements WrapsDriver
 {
     private WebDriver driver;
 
@@ -23,4 +27,11 @@ public class BaseScreen
     {
         return this.driver;
     }
+
+
+    @Override
+    public WebDriver getWrappedDriver()
+    {
+        return this.driver;
+    }
 }
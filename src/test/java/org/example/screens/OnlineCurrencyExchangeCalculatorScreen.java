@@ -2,18 +2,28 @@ package org.example.screens;
 
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.awaitility.Awaitility;
+import org.awaitility.core.ConditionTimeoutException;
+import org.example.misc.Country;
+import org.example.misc.GenericTestError;
+import org.example.misc.RetryableStep;
+import org.example.misc.ScreenState;
 import org.example.misc.ScreenType;
 import org.example.util.Elements;
+import org.example.util.LatencyLog;
+import org.example.util.TableChangeFeed;
 import org.example.util.Toolbox;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
-import org.openqa.selenium.support.pagefactory.AjaxElementLocatorFactory;
 
 import io.qameta.allure.Allure;
 import io.qameta.allure.Step;
@@ -30,36 +40,39 @@ public class OnlineCurrencyExchangeCalculatorScreen extends BaseScreen implement
 
     /* ------------ Header SELL elements ------------ */
     @FindBy(css = "input[data-ng-model='currencyExchangeVM.filter.from_amount']")
-    private WebElement sellTextField;
+    WebElement sellTextField;
 
     @FindBy(css = "div[data-ng-model='currencyExchangeVM.filter.from']")
-    private WebElement sellCurrencyMenu;
+    WebElement sellCurrencyMenu;
 
     /* ------------ Header BUY elements ------------ */
     @FindBy(css = "input[data-ng-model='currencyExchangeVM.filter.to_amount']")
-    private WebElement buyTextField;
+    WebElement buyTextField;
 
     @FindBy(css = "div[data-ng-model='currencyExchangeVM.filter.to']")
-    private WebElement buyCurrencyMenu;
+    WebElement buyCurrencyMenu;
 
     /* ------------ Header button elements ------------ */
     @FindBy(css = "button[data-ng-click='currencyExchangeVM.filterExchangeRates()']")
-    private WebElement filterButton;
+    WebElement filterButton;
 
     @FindBy(css = "button[data-ng-click='currencyExchangeVM.clearFilter()']")
-    private WebElement clearFilterButton;
+    WebElement clearFilterButton;
 
     /* ------------ Exchange rate table elements ------------ */
     @FindBy(css = "table[class='transformable-table table table-striped']")
-    private WebElement exchangeRateTable;
+    WebElement exchangeRateTable;
 
     @FindBy(css = "div[data-ng-show='currencyExchangeVM.loading']")
-    private WebElement loadingDiv;
+    WebElement loadingDiv;
+
+    /** The country of the screen URL */
+    private static final Country URL_COUNTRY = Country.BULGARIA;
 
     public OnlineCurrencyExchangeCalculatorScreen(final WebDriver driver)
     {
         super(driver);
-        PageFactory.initElements(new AjaxElementLocatorFactory(getDriver(), 10), this);
+        OnlineCurrencyExchangeCalculatorScreenLocators.initElements(this, getDriver(), 10);
     }
 
 
@@ -70,6 +83,38 @@ public class OnlineCurrencyExchangeCalculatorScreen extends BaseScreen implement
     }
 
 
+    /**
+     * Navigates to the screen and brings it in the state declared by a test - the country is switched through the footer (and restored
+     * from a snapshot after the first time, see {@link PageFooterComponent#switchToCountry(Country)}) and the filter is applied
+     *
+     * @param state the state required by the test, {@code null} for the state in which the screen is loaded
+     */
+    @Step("Bring the 'Online Currency Exchange' page to the state required by the test")
+    public void toState(final ScreenState state)
+    {
+        if (state != null && state.screen() != ScreenType.CURRENCY_CALCULATOR)
+        {
+            throw new GenericTestError(String.format("Screen [%s] cannot be set up from the 'Online Currency Exchange' page", state.screen()));
+        }
+        toScreen();
+        if (state == null)
+        {
+            return;
+        }
+        if (state.country() != URL_COUNTRY)
+        {
+            new PageFooterComponent(getDriver()).switchToCountry(state.country());
+        }
+        if (StringUtils.isNotEmpty(state.filter()))
+        {
+            waitForExchangeRateTableToLoad();
+            fillSellField(state.filter());
+            clickFilter();
+            waitForExchangeRateTableToLoad();
+        }
+    }
+
+
     /**
      * Fills a given value for the 'Sell' value field. If the field has some value at the time this is called,
      * the contained value will first be cleared before entering a new one
@@ -77,6 +122,7 @@ public class OnlineCurrencyExchangeCalculatorScreen extends BaseScreen implement
      * @param sellValue the new value which will be entered in the 'Sell' field
      */
     @Step("Set the value of the 'Sell' field to [{sellValue}]")
+    @RetryableStep
     public void fillSellField(final String sellValue)
     {
         fillSellField(sellValue, true);
@@ -90,7 +136,19 @@ public class OnlineCurrencyExchangeCalculatorScreen extends BaseScreen implement
     }
 
 
+    /**
+     * Replaces the value of the 'Sell' field without waiting for the page to react, for inputs which are submitted right after
+     *
+     * @param sellValue the new value which will be entered in the 'Sell' field
+     */
+    public void typeSellField(final String sellValue)
+    {
+        Elements.typeInField(getSellTextField(), sellValue, true);
+    }
+
+
     @Step("Clear the contents of the 'Sell' field")
+    @RetryableStep
     public void clearSellField()
     {
         Elements.clearField(getSellTextField());
@@ -104,6 +162,7 @@ public class OnlineCurrencyExchangeCalculatorScreen extends BaseScreen implement
      * @param buyValue the new value which will be entered in the 'Buy' field
      */
     @Step("Set the value of the 'Buy' field to [{buyValue}]")
+    @RetryableStep
     public void fillBuyField(final String buyValue)
     {
         fillBuyField(buyValue, true);
@@ -116,13 +175,62 @@ public class OnlineCurrencyExchangeCalculatorScreen extends BaseScreen implement
     }
 
 
+    /**
+     * Replaces the value of the 'Buy' field without waiting for the page to react, for inputs which are submitted right after
+     *
+     * @param buyValue the new value which will be entered in the 'Buy' field
+     */
+    public void typeBuyField(final String buyValue)
+    {
+        Elements.typeInField(getBuyTextField(), buyValue, true);
+    }
+
+
     @Step("Clear the contents of the 'Buy' field")
+    @RetryableStep
     public void clearBuyField()
     {
         Elements.clearField(getBuyTextField());
     }
 
 
+    /**
+     * Selects a currency in the 'Sell' currency menu. The selection is set directly on the model of the menu, instead of opening it and
+     * searching through its options
+     *
+     * @param currency the code of the currency, e.g. 'EUR'
+     */
+    @Step("Select [{currency}] in the 'Sell' currency menu")
+    public void selectSellCurrency(final String currency)
+    {
+        selectCurrency(getSellCurrencyMenu(), currency, "Sell");
+    }
+
+
+    /**
+     * Selects a currency in the 'Buy' currency menu. The selection is set directly on the model of the menu, instead of opening it and
+     * searching through its options
+     *
+     * @param currency the code of the currency, e.g. 'EUR'
+     */
+    @Step("Select [{currency}] in the 'Buy' currency menu")
+    public void selectBuyCurrency(final String currency)
+    {
+        selectCurrency(getBuyCurrencyMenu(), currency, "Buy");
+    }
+
+
+    private void selectCurrency(final WebElement menu, final String currency, final String menuName)
+    {
+        final String selected = Elements.setAngularModel(menu, currency, getDriver());
+        if (!StringUtils.equals(selected, currency))
+        {
+            throw new GenericTestError(String.format("Currency [%s] could not be selected in the '%s' currency menu, its value is [%s]",
+                                                     currency, menuName, selected));
+        }
+    }
+
+
     @Step("Click 'Filter' button")
     public void clickFilter()
     {
@@ -132,6 +240,75 @@ public class OnlineCurrencyExchangeCalculatorScreen extends BaseScreen implement
     }
 
 
+    /**
+     * Clicks the 'Filter' button and waits only as long as the table is loading, instead of the fixed waits of {@link this#clickFilter()}.
+     * Meant for tests which submit many inputs in a row. When the network is shaped, the time until the table was loaded is recorded in the
+     * {@link LatencyLog}. If the loading indicator is not seen within a second, the page may not have reacted yet (or at all) - callers
+     * which read the result have to verify it on their own
+     *
+     * @param timeoutInSeconds the maximum time to wait for the table to load
+     * @return {@code true} if the table was seen loading and has loaded, {@code false} if the loading indicator was not seen
+     */
+    public boolean submitFilter(final int timeoutInSeconds)
+    {
+        final long start = System.nanoTime();
+        Elements.clickElement(getFilterButton());
+        try
+        {
+            // The loading indicator may be shown with a slight delay, or not at all for requests rejected on the client side
+            Awaitility.await()
+                      .atMost(Duration.ofSeconds(1))
+                      .pollInterval(Duration.ofMillis(50))
+                      .until(() -> !StringUtils.contains(Elements.getClass(getLoadingDiv()), "ng-hide"));
+        }
+        catch (final ConditionTimeoutException e)
+        {
+            return false;
+        }
+        Awaitility.await()
+                  .atMost(Duration.ofSeconds(timeoutInSeconds))
+                  .pollInterval(Duration.ofMillis(100))
+                  .until(() -> StringUtils.contains(Elements.getClass(getLoadingDiv()), "ng-hide"));
+        // Unshaped timings are not comparable between runs, and would add a step for every input of the fuzzer and the sweep
+        if (LatencyLog.isNetworkShaped())
+        {
+            LatencyLog.record("filter", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return true;
+    }
+
+
+    /**
+     * Starts recording the changes to the 'Exchange rate' table and the popups shown on the screen, see {@link TableChangeFeed}. Has to be
+     * called again after the screen was reloaded
+     *
+     * @return the feed of the changes
+     */
+    public TableChangeFeed openExchangeRateTableFeed()
+    {
+        return TableChangeFeed.attach(getDriver(), getExchangeRateTable());
+    }
+
+
+    /**
+     * Clicks the 'Filter' button and waits until the page has reacted to it - the table was updated or a popup was shown. Changes recorded
+     * before the click are discarded
+     *
+     * @param feed the feed of the screen, see {@link this#openExchangeRateTableFeed()}
+     * @param timeoutInSeconds the maximum time to wait for the first change
+     * @return the changes caused by filtering, empty if there were none
+     */
+    @Step("Click 'Filter' button and wait for the changes it causes")
+    public List<TableChangeFeed.Change> filterAndAwaitChanges(final TableChangeFeed feed, final int timeoutInSeconds)
+    {
+        feed.drain();
+        Elements.clickElement(getFilterButton());
+        final List<TableChangeFeed.Change> changes = feed.awaitChanges(Duration.ofMillis(300), Duration.ofSeconds(timeoutInSeconds));
+        Allure.step(String.format("[%s] changes after filtering", changes.size()));
+        return changes;
+    }
+
+
     @Step("Click 'Clear filter' button")
     public void clickClearFilter()
     {
@@ -142,6 +319,7 @@ public class OnlineCurrencyExchangeCalculatorScreen extends BaseScreen implement
 
 
     @Step("Scroll to the 'Exchange rate' table")
+    @RetryableStep
     public void scrollToExchangeRateTable()
     {
         Elements.scrollIntoView(getSellTextField(), getDriver());
@@ -166,6 +344,33 @@ public class OnlineCurrencyExchangeCalculatorScreen extends BaseScreen implement
     }
 
 
+    /**
+     * Navigates to the screen and measures the time from the start of the navigation until the 'Exchange rate' table has rows and is no
+     * longer loading, as seen by the page itself. Unlike {@link this#waitForExchangeRateTableToLoad(int)}, there are no fixed waits. The
+     * result is recorded in the {@link LatencyLog}
+     *
+     * @param timeoutInSeconds the maximum time to wait for the table to load
+     * @return the load time in milliseconds
+     */
+    @Step("Measure the load time of the 'Exchange rate' table")
+    public long measureTableLoad(final int timeoutInSeconds)
+    {
+        toScreen();
+        final JavascriptExecutor executor = (JavascriptExecutor)getDriver();
+        final Object loadedAt = Awaitility.await()
+                                          .atMost(Duration.ofSeconds(timeoutInSeconds))
+                                          .pollInterval(Duration.ofMillis(50))
+                                          .until(() -> executor.executeScript(
+                                              "var table = arguments[0], loading = arguments[1]; "
+                                              + "return table.querySelectorAll('tbody > tr').length > 0 && loading.classList.contains('ng-hide') "
+                                              + "? Math.round(performance.now()) : null;", getExchangeRateTable(), getLoadingDiv()),
+                                                 Objects::nonNull);
+        final long millis = ((Number)loadedAt).longValue();
+        LatencyLog.record("table-load", millis);
+        return millis;
+    }
+
+
     public WebElement getSellTextField()
     {
         return sellTextField;
@@ -212,4 +417,22 @@ public class OnlineCurrencyExchangeCalculatorScreen extends BaseScreen implement
     {
         return loadingDiv;
     }
+
+
+    /**
+     * @return the form holding the 'Sell'/'Buy' fields, the currency menus and the filter buttons
+     */
+    public WebElement getFilterHeader()
+    {
+        return sellTextField.findElement(By.xpath("./ancestor::form[1]"));
+    }
+
+
+    /**
+     * @return the header row (column titles) of the 'Exchange rate' table
+     */
+    public WebElement getExchangeRateTableHeader()
+    {
+        return exchangeRateTable.findElement(By.tagName("thead"));
+    }
 }
@@ -1,15 +1,19 @@
 package org.example.screens;
 
 
+import java.time.Duration;
+
 import org.apache.commons.lang3.StringUtils;
+import org.awaitility.Awaitility;
 import org.example.misc.Country;
+import org.example.util.BrowserStateSnapshot;
 import org.example.util.Elements;
+import org.example.util.Toolbox;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
-import org.openqa.selenium.support.pagefactory.AjaxElementLocatorFactory;
 
 import io.qameta.allure.Step;
 
@@ -25,21 +29,24 @@ public class PageFooterComponent extends BaseScreen
 {
 
     @FindBy(className = "footer-bottom")
-    private WebElement footer;
+    WebElement footer;
 
     @FindBy(className = "js-localization-popover")
-    private WebElement localeMenuButton;
+    WebElement localeMenuButton;
 
     @FindBy(id = "countries-dropdown")
-    private WebElement countryButton;
+    WebElement countryButton;
 
     @FindBy(css = "ul[aria-labelledby='countries-dropdown']")
-    private WebElement countryDropdownMenu;
+    WebElement countryDropdownMenu;
+
+    private static final String MARK_DOCUMENT_SCRIPT = "window.__countrySwitch = true;";
+    private static final String IS_DOCUMENT_MARKED_SCRIPT = "return window.__countrySwitch === true;";
 
     public PageFooterComponent(final WebDriver driver)
     {
         super(driver);
-        PageFactory.initElements(new AjaxElementLocatorFactory(getDriver(), 20), this);
+        PageFooterComponentLocators.initElements(this, getDriver(), 20);
     }
 
 
@@ -75,4 +82,45 @@ public class PageFooterComponent extends BaseScreen
                            .ifPresent(WebElement::click);
     }
 
+
+    /**
+     * Brings the page in the state of a given country being selected. The country is selected through the footer only the first time
+     * in a run (per browser), afterwards the resulting browser state is restored from a {@link BrowserStateSnapshot}. Use
+     * {@link this#selectCountry(Country)} when the selection itself is under test
+     *
+     * @param country the country which should be selected
+     */
+    @Step("Switch to country [{country.name}]")
+    public void switchToCountry(final Country country)
+    {
+        BrowserStateSnapshot.restoreOrCapture(String.join("-", "country", country.getCountryCode(), Toolbox.getBrowserName(getDriver())),
+                                              getDriver(),
+                                              () ->
+                                              {
+                                                  if (isCountrySelected(country))
+                                                  {
+                                                      return;
+                                                  }
+                                                  // Marks the current document, so that the wait passes only on the page of the new country
+                                                  ((JavascriptExecutor)getDriver()).executeScript(MARK_DOCUMENT_SCRIPT);
+                                                  scrollToFooter().openLanguageMenu().openCountryDropdown().selectCountry(country);
+                                                  // Capture the state only after the page of the new country has been loaded
+                                                  Awaitility.await()
+                                                            .atMost(Duration.ofSeconds(20))
+                                                            .ignoreExceptions()
+                                                            .until(() -> !Boolean.TRUE.equals(((JavascriptExecutor)getDriver())
+                                                                                                  .executeScript(IS_DOCUMENT_MARKED_SCRIPT))
+                                                                         && isCountrySelected(country));
+                                              });
+    }
+
+
+    /**
+     * @return {@code true} if the country button of the footer shows the given country, {@code false} otherwise
+     */
+    private boolean isCountrySelected(final Country country)
+    {
+        // The button is inside the (closed) language menu, so its rendered text is empty
+        return StringUtils.containsIgnoreCase(Elements.getAttribute(countryButton, "textContent"), country.getName());
+    }
 }
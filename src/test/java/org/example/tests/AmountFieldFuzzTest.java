@@ -0,0 +1,139 @@
+package org.example.tests;
+
+
+import java.util.function.Predicate;
+
+import org.example.base.TestBase;
+import org.example.screens.OnlineCurrencyExchangeCalculatorScreen;
+import org.example.util.AmountFuzzer;
+import org.example.util.Elements;
+import org.example.util.ErrorLog;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.Description;
+import io.qameta.allure.junit4.DisplayName;
+
+
+/**
+ * Property based tests for the amount fields of the 'Currency exchange calculator'. Inputs are generated by {@link AmountFuzzer} and
+ * typed and submitted one after another on the already loaded page, without the fixed pause of {@link Elements#fillField}. The page is
+ * reloaded only after an input has failed, and failing inputs are shrunk to a minimal case before being reported, with at most
+ * {@code fuzz.shrink.checks} (20 by default) page reloads per input. The number of inputs and the seed can be set with the
+ * {@code fuzz.iterations} and {@code fuzz.seed} system properties. The seed (the current time by default) is reported as a parameter
+ * and a step of each test, so that a run can be repeated
+ *
+ * @author l.milov
+ */
+public class AmountFieldFuzzTest extends TestBase
+{
+
+    private static final int ITERATIONS = Integer.getInteger("fuzz.iterations", 25);
+    private static final long SEED = Long.getLong("fuzz.seed", System.currentTimeMillis());
+    private static final int MAX_SHRINK_CHECKS = Integer.getInteger("fuzz.shrink.checks", 20);
+
+    private OnlineCurrencyExchangeCalculatorScreen calculatorScreen;
+
+    @Before
+    public void beforeEach()
+    {
+        calculatorScreen = new OnlineCurrencyExchangeCalculatorScreen(getDriver());
+        calculatorScreen.toScreen();
+        calculatorScreen.waitForExchangeRateTableToLoad();
+    }
+
+
+    @DisplayName("Check that generated 'Sell' amounts do not break the app")
+    @Description("Verify that no generated input for the 'Sell' field (numeric edge cases, locale formats, overflows, injections) " +
+                 "causes a 'Server error' popup when filtering")
+    @Test
+    public void testSellFieldWithGeneratedInputs()
+    {
+        checkGeneratedInputs("Sell", this::isHandledBySellField);
+    }
+
+
+    @DisplayName("Check that generated 'Buy' amounts do not break the app")
+    @Description("Verify that no generated input for the 'Buy' field (numeric edge cases, locale formats, overflows, injections) " +
+                 "causes a 'Server error' popup when filtering")
+    @Test
+    public void testBuyFieldWithGeneratedInputs()
+    {
+        checkGeneratedInputs("Buy", this::isHandledByBuyField);
+    }
+
+
+    /**
+     * Submits the generated inputs through a given field and shrinks the ones that fail
+     *
+     * @param fieldName the name of the field, used in the report
+     * @param property the checked property, returns {@code true} if the input was handled properly
+     */
+    private void checkGeneratedInputs(final String fieldName, final Predicate<String> property)
+    {
+        Allure.parameter("seed", SEED);
+        final String seedMessage = String.format("Generate [%s] inputs for the '%s' field with seed [%s] (repeat with -Dfuzz.seed=%s)",
+                                                 ITERATIONS, fieldName, SEED, SEED);
+        Allure.step(seedMessage);
+        final AmountFuzzer fuzzer = new AmountFuzzer(SEED);
+        final ErrorLog errorLog = new ErrorLog();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            final String input = fuzzer.next();
+            if (!property.test(input))
+            {
+                final String minimalInput = AmountFuzzer.shrink(input, candidate -> !isHandledOnFreshPage(candidate, property),
+                                                                MAX_SHRINK_CHECKS);
+                Allure.step(String.format("Input [%s] for the '%s' field failed, shrunk to [%s]", input, fieldName, minimalInput));
+                errorLog.add(String.format("A 'Server error' popup was shown for '%s' input [%s] (minimal failing input: [%s], seed: %s)",
+                                           fieldName, input, minimalInput, SEED));
+                reloadScreen();
+            }
+        }
+        Allure.step(String.format("Verify that all [%s] generated inputs were handled", ITERATIONS));
+        errorLog.validate();
+    }
+
+
+    private boolean isHandledBySellField(final String input)
+    {
+        calculatorScreen.typeSellField(input);
+        return isFilterHandled();
+    }
+
+
+    private boolean isHandledByBuyField(final String input)
+    {
+        calculatorScreen.typeBuyField(input);
+        return isFilterHandled();
+    }
+
+
+    /**
+     * @return {@code true} if filtering with the current input did not cause a 'Server error' popup, {@code false} otherwise
+     */
+    private boolean isFilterHandled()
+    {
+        calculatorScreen.submitFilter(30);
+        return !Elements.isVisible(By.xpath("//span[text()='Server error']"), getDriver());
+    }
+
+
+    /**
+     * Checks an input on a freshly loaded page, so that popups left by previous inputs do not affect the result. Used while shrinking
+     */
+    private boolean isHandledOnFreshPage(final String input, final Predicate<String> property)
+    {
+        reloadScreen();
+        return property.test(input);
+    }
+
+
+    private void reloadScreen()
+    {
+        calculatorScreen.toScreen();
+        calculatorScreen.waitForExchangeRateTableToLoad();
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.tests;
+
+
+import org.example.base.TestBase;
+import org.example.screens.OnlineCurrencyExchangeCalculatorScreen;
+import org.example.util.LatencyLog;
+import org.example.util.LocalProxy;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.junit4.DisplayName;
+
+
+/**
+ * Measures how fast the 'Currency exchange calculator' responds under the network conditions given by {@code -Dnetwork.profile} (see
+ * {@link org.example.misc.NetworkProfile}). Skipped when no profile is set, as timings over an unshaped network are not comparable. Each
+ * action is measured {@code latency.samples} times (3 by default), the samples are kept in the {@link LatencyLog}
+ *
+ * @author l.milov
+ */
+public class CalculatorResponsivenessTest extends TestBase
+{
+
+    private static final int SAMPLES = Integer.getInteger("latency.samples", 3);
+    private static final int TIMEOUT_IN_SECONDS = 120;
+
+    private OnlineCurrencyExchangeCalculatorScreen calculatorScreen;
+
+    @Before
+    public void beforeEach()
+    {
+        Assume.assumeTrue("The responsiveness is measured only with -Dnetwork.profile",
+                          LocalProxy.isEnabled() && LocalProxy.getInstance().getNetworkProfile() != null);
+        calculatorScreen = new OnlineCurrencyExchangeCalculatorScreen(getDriver());
+    }
+
+
+    @DisplayName("Measure the load time of the 'Exchange rate' table")
+    @Description("Measure the time from navigating to the calculator until the 'Exchange rate' table is loaded")
+    @Test
+    public void testTableLoadLatency()
+    {
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            calculatorScreen.measureTableLoad(TIMEOUT_IN_SECONDS);
+        }
+    }
+
+
+    @DisplayName("Measure the time it takes to filter the 'Exchange rate' table")
+    @Description("Measure the time from clicking 'Filter' with a 'Sell' amount until the 'Exchange rate' table is loaded again")
+    @Test
+    public void testFilterLatency()
+    {
+        calculatorScreen.measureTableLoad(TIMEOUT_IN_SECONDS);
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            // A different amount each time, so that the result is not served from a cache
+            calculatorScreen.fillSellField(Integer.toString(150 + i), true);
+            calculatorScreen.submitFilter(TIMEOUT_IN_SECONDS);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.tests;
+
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+import org.example.base.ParallelParameterized;
+import org.example.base.TestBase;
+import org.example.misc.Country;
+import org.example.screens.OnlineCurrencyExchangeCalculatorScreen;
+import org.example.screens.PageFooterComponent;
+import org.example.util.Elements;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.Description;
+import io.qameta.allure.junit4.DisplayName;
+
+
+/**
+ * Checks the 'Currency exchange calculator' for each country. Every test starts by switching to the country of its row through
+ * {@link PageFooterComponent#switchToCountry(Country)}, so the country is selected through the footer only by the first test of the row -
+ * the following tests restore the captured browser state. The rows run at the same time, each with its own session
+ *
+ * @author l.milov
+ */
+@RunWith(ParallelParameterized.class)
+public class CountryDefaultsTest extends TestBase
+{
+
+    @Parameters(name = "Country [{0}]")
+    public static Collection<Object[]> data()
+    {
+        return Arrays.stream(Country.values()).map(country -> new Object[]{country}).collect(Collectors.toList());
+    }
+
+    @Parameter
+    public Country country;
+
+    private OnlineCurrencyExchangeCalculatorScreen calculatorScreen;
+
+    @Before
+    public void beforeEach()
+    {
+        calculatorScreen = new OnlineCurrencyExchangeCalculatorScreen(getDriver());
+        calculatorScreen.toScreen();
+        new PageFooterComponent(getDriver()).switchToCountry(country);
+        calculatorScreen.waitForExchangeRateTableToLoad();
+    }
+
+
+    @DisplayName("Check the 'Sell' currency selected for the country")
+    @Description("Verify that the currency of the country is selected in the 'Sell' currency menu after switching to the country")
+    @Test
+    public void testSellCurrencyMatchesCountry()
+    {
+        Allure.step("Verify that the currency of the country is selected in the 'Sell' currency menu");
+        Assert.assertEquals(String.format("The wrong currency was selected for country [%s]", country.getName()),
+                            country.getCurrency(),
+                            Elements.getText(calculatorScreen.getSellCurrencyMenu()));
+    }
+
+
+    @DisplayName("Check if the 'Exchange rate' table is loaded for the country")
+    @Description("Verify that the 'Exchange rate' table has data after switching to the country")
+    @Test
+    public void testExchangeRateTableIsLoaded()
+    {
+        Allure.step("Verify that data is loaded in the 'Exchange rates' table");
+        Assert.assertNotEquals(String.format("There was no data in the exchange rate table for country [%s]", country.getName()),
+                               "-",
+                               Elements.getText(Elements.tables.getTableCell(calculatorScreen.getExchangeRateTable(), 0, 0)));
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.tests;
+
+
+import org.example.base.BrowserMatrix;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+
+/**
+ * Runs the UI tests against all configured browsers at the same time. Activate with the {@code browser-matrix} profile, e.g.
+ * {@code mvn test -P ui-tests,browser-matrix -Dbrowsers=CHROME,FIREFOX}
+ *
+ * @author l.milov
+ */
+@RunWith(BrowserMatrix.class)
+@Suite.SuiteClasses({CurrencyExchangeHeaderTest.class, InvalidInputCheckerTest.class})
+public class CrossBrowserSuite
+{
+}
@@ -0,0 +1,111 @@
+package org.example.tests;
+
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.example.base.DriverExtension;
+import org.example.screens.OnlineCurrencyExchangeCalculatorScreen;
+import org.example.util.ExchangeRateTable;
+import org.example.util.TableChangeFeed;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.openqa.selenium.WebDriver;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.Description;
+
+
+/**
+ * JUnit 5 versions of the checks which produce one result per input or per table row, run in place of {@link InvalidInputCheckerTest} and
+ * {@link CurrencyExchangeHeaderTest#testLossIndicatorIsShown()} on the JUnit Platform. Each factory loads the page once and emits a
+ * dynamic test per input/row, so every input and every row is reported on its own. Runs on the JUnit Platform only (the
+ * 'junit-platform' profile), where the classes run in parallel, each with its own session
+ *
+ * @author l.milov
+ */
+@ExtendWith(DriverExtension.class)
+public class CurrencyCalculatorPlatformTest
+{
+
+    /** Serializes the methods of the class, as they share its session */
+    private static final String SESSION = "CurrencyCalculatorPlatformTest.session";
+
+    @DisplayName("Check if invalid inputs are not allowed")
+    @Description("Verify that the 'Invalid parameters' popup is shown for each invalid 'Sell' amount. All inputs are checked on a single page "
+                 + "load, only the popups shown after each filter are taken into account")
+    @ResourceLock(SESSION)
+    @TestFactory
+    public Stream<DynamicTest> testInvalidInputs(final WebDriver driver)
+    {
+        final OnlineCurrencyExchangeCalculatorScreen calculatorScreen = new OnlineCurrencyExchangeCalculatorScreen(driver);
+        calculatorScreen.toScreen();
+        calculatorScreen.waitForExchangeRateTableToLoad();
+        final TableChangeFeed feed = calculatorScreen.openExchangeRateTableFeed();
+        return Stream.of("-150", "1-50", "150-", "150/", "150\\", "150^", "150L")
+                     .map(input -> DynamicTest.dynamicTest(String.format("Input [%s] is not allowed", input), () ->
+                     {
+                         calculatorScreen.fillSellField(input);
+                         final List<TableChangeFeed.Change> changes = calculatorScreen.filterAndAwaitChanges(feed, 10);
+                         Allure.step("Check if the 'Invalid input' popup was shown");
+                         Assertions.assertTrue(changes.stream()
+                                                      .anyMatch(change -> change.getType() == TableChangeFeed.Change.Type.POPUP
+                                                                          && change.getText().contains("Invalid parameters")),
+                                               String.format("A popup indicating that the input [%s] was invalid was not shown, the changes were %s",
+                                                             input, changes));
+                     }));
+    }
+
+
+    @DisplayName("Check if the loss indicator is shown when applicable, per currency")
+    @Description("Verify that the loss indicator is shown in each row, for which the exchange rate is lower than the 'Paysera amount'")
+    @ResourceLock(SESSION)
+    @TestFactory
+    public Stream<DynamicTest> testLossIndicatorPerRow(final WebDriver driver)
+    {
+        final OnlineCurrencyExchangeCalculatorScreen calculatorScreen = new OnlineCurrencyExchangeCalculatorScreen(driver);
+        calculatorScreen.toScreen();
+        calculatorScreen.waitForExchangeRateTableToLoad();
+        calculatorScreen.fillSellField("150");
+        calculatorScreen.clickFilter();
+        calculatorScreen.waitForExchangeRateTableToLoad();
+        final ExchangeRateTable table = ExchangeRateTable.extract(driver, calculatorScreen.getExchangeRateTable());
+        final int payseraAmountColumnNumber = table.getColumnNumber("Paysera amount");
+        // The last row holds no rates
+        return IntStream.range(0, table.getRows().size() - 1).mapToObj(rowNumber ->
+        {
+            final List<String> cells = table.getRows().get(rowNumber);
+            return DynamicTest.dynamicTest(String.format("Currency [%s]", cells.get(0)), () ->
+            {
+                final String payseraValue = cells.get(payseraAmountColumnNumber);
+                final String bankValue = cells.get(payseraAmountColumnNumber + 1);
+                if (Arrays.asList(payseraValue, bankValue).contains("-"))
+                {
+                    return;
+                }
+                Assertions.assertFalse(sanitizeStringToFloat(payseraValue) > sanitizeStringToFloat(bankValue) && !StringUtils.contains(bankValue, "\n"),
+                                       String.format("No loss indicator, even though the 'Paysera amount' (%s) was larger than the 'bank amount' (%s)",
+                                                     payseraValue, bankValue));
+            });
+        });
+    }
+
+
+    /**
+     * Converts a string taken from the 'Exchange rate' table to float
+     *
+     * @param input the text taken from a cell of the 'Exchange rate' table
+     * @return a float, extracted from the given string
+     */
+    private static float sanitizeStringToFloat(final String input)
+    {
+        return Float.parseFloat(StringUtils.remove(StringUtils.substringBefore(input, "\n"), ","));
+    }
+}
@@ -5,19 +5,25 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
+import org.example.base.ScreenStateTracker;
+import org.example.base.StateOrderedRunner;
 import org.example.base.TestBase;
 import org.example.misc.Country;
+import org.example.misc.NonVisual;
+import org.example.misc.ScreenState;
 import org.example.screens.OnlineCurrencyExchangeCalculatorScreen;
 import org.example.screens.PageFooterComponent;
 import org.example.util.Elements;
 import org.example.util.ErrorLog;
+import org.example.util.ExchangeRateTable;
 import org.example.util.Toolbox;
+import org.example.util.VisualCheck;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
-import org.junit.BeforeClass;
 import org.junit.Test;
+import org.junit.runner.RunWith;
 import org.openqa.selenium.By;
-import org.openqa.selenium.WebElement;
 
 import io.qameta.allure.Allure;
 import io.qameta.allure.Description;
@@ -25,36 +31,42 @@ import io.qameta.allure.junit4.DisplayName;
 
 
 /**
- * Contains tests related to the 'Currency exchange rate' grid and its filters
+ * Contains tests related to the 'Currency exchange rate' grid and its filters. Tests declare the page state they start from with
+ * {@link ScreenState}, so the page is only reloaded when the previous test did not leave it in that state
  *
  * @author l.milov
  */
+@RunWith(StateOrderedRunner.class)
 public class CurrencyExchangeHeaderTest extends TestBase
 {
 
     private static final String FIELD_BUY = "Buy";
     private static final String FIELD_SELL = "Sell";
 
-    private static OnlineCurrencyExchangeCalculatorScreen calculatorScreen;
-    private static PageFooterComponent footer;
-
-    @BeforeClass
-    public static void setup()
-    {
-        calculatorScreen = new OnlineCurrencyExchangeCalculatorScreen(getDriver());
-        footer = new PageFooterComponent(getDriver());
-    }
-
+    private OnlineCurrencyExchangeCalculatorScreen calculatorScreen;
+    private PageFooterComponent footer;
 
     @Before
     public void beforeEach()
     {
-        calculatorScreen.toScreen();
+        // Page objects are created per test, as the class may run against several browsers at the same time
+        calculatorScreen = new OnlineCurrencyExchangeCalculatorScreen(getDriver());
+        footer = new PageFooterComponent(getDriver());
+        if (ScreenStateTracker.isNavigationNeeded())
+        {
+            calculatorScreen.toState(ScreenStateTracker.getRequiredState());
+        }
+        else
+        {
+            Allure.step("The page is already in the state required by the test, skipping navigation");
+        }
     }
 
 
     @DisplayName("Check if the 'Buy' field is cleared when entering a 'Sell' amount")
     @Description("Verifies that any value given for the 'Buy' field is automatically cleared, when an input is made for the 'Sell' field")
+    @ScreenState
+    @NonVisual
     @Test
     public void testCheckBuyFieldIsCleared()
     {
@@ -64,6 +76,8 @@ public class CurrencyExchangeHeaderTest extends TestBase
 
     @DisplayName("Check if the 'Sell' field is cleared when entering a 'Buy' amount")
     @Description("Verifies that any value given for the 'Sell' field is automatically cleared, when an input is made for the 'Buy' field")
+    @ScreenState
+    @NonVisual
     @Test
     public void testCheckSellFieldIsCleared()
     {
@@ -74,6 +88,8 @@ public class CurrencyExchangeHeaderTest extends TestBase
     @DisplayName("Check if the 'Sell' currency is updated when switching countries")
     @Description("Verify that an applicable currency is automatically selected in the 'Sell' currency menu when " +
                  "switching the country. Specifically, [RUB] should be selected when the country is switched to [Russia]")
+    @ScreenState
+    @NonVisual
     @Test
     public void testCurrencyIsUpdatedIfCountryIsChanged()
     {
@@ -87,7 +103,7 @@ public class CurrencyExchangeHeaderTest extends TestBase
                             Country.LITHUANIA.getCurrency(),
                             Elements.getText(calculatorScreen.getSellCurrencyMenu()));
         final ErrorLog errorLog = new ErrorLog();
-        final List<String> currentHeaders = Elements.tables.getTableHeaders(calculatorScreen.getExchangeRateTable());
+        final List<String> currentHeaders = ExchangeRateTable.extract(getDriver(), calculatorScreen.getExchangeRateTable()).getHeaders();
         final List<String> expectedHeaders = Arrays.asList("Swedbank amount", "SEB amount", "Citadele amount", "Luminor amount");
         expectedHeaders.forEach(header ->
         {
@@ -103,6 +119,7 @@ public class CurrencyExchangeHeaderTest extends TestBase
 
     @DisplayName("Check if longer inputs to the filter header break the app")
     @Description("Verify that the data is loaded properly in the 'Exchange rates' table, even if the given input for filtering is a big number")
+    @ScreenState
     @Test
     public void testFilterWithLongInput()
     {
@@ -122,22 +139,21 @@ public class CurrencyExchangeHeaderTest extends TestBase
 
     @DisplayName("Check if the loss indicator is shown when applicable")
     @Description("Verify that the loss indicator is shown in cells, for which the exchange rate is lower than the corresponding 'Paysera amount' cell")
+    @ScreenState(filter = "150", preserved = true)
     @Test
     public void testLossIndicatorIsShown()
     {
         calculatorScreen.waitForExchangeRateTableToLoad();
-        calculatorScreen.fillSellField("150");
-        calculatorScreen.clickFilter();
-        calculatorScreen.waitForExchangeRateTableToLoad();
+        final ExchangeRateTable table = ExchangeRateTable.extract(getDriver(), calculatorScreen.getExchangeRateTable());
         Allure.step("Check if all cells contain a loss indicator if applicable");
-        final List<WebElement> rows = Elements.tables.getTableRows(calculatorScreen.getExchangeRateTable());
-        final int payseraAmountColumnNumber = Elements.tables.getColumnNumber(calculatorScreen.getExchangeRateTable(), "Paysera amount");
+        final List<List<String>> rows = table.getRows();
+        final int payseraAmountColumnNumber = table.getColumnNumber("Paysera amount");
         final ErrorLog errorLog = new ErrorLog();
         for (int i = 0; i < rows.size() - 1; i++)
         {
-            final List<WebElement> cellsOfRow = Elements.tables.getCellsForRow(rows.get(i));
-            final String payseraValue = Elements.getText(cellsOfRow.get(payseraAmountColumnNumber));
-            final String bankValue = Elements.getText(cellsOfRow.get(payseraAmountColumnNumber + 1));
+            final List<String> cellsOfRow = rows.get(i);
+            final String payseraValue = cellsOfRow.get(payseraAmountColumnNumber);
+            final String bankValue = cellsOfRow.get(payseraAmountColumnNumber + 1);
 
             if (bankValue.equalsIgnoreCase("-") || payseraValue.equalsIgnoreCase("-"))
             {
@@ -146,10 +162,10 @@ public class CurrencyExchangeHeaderTest extends TestBase
             if ((sanitizeStringToFloat(payseraValue) > sanitizeStringToFloat(bankValue)) && !StringUtils.contains(bankValue, "\n"))
             {
                 errorLog.add(String.format("Row for currency [%s] did not have a loss indicator, even though the 'Paysera amount' (%s) was larger than the 'bank amount' (%s); ",
-                                           Elements.getText(Elements.tables.getTableCell(calculatorScreen.getExchangeRateTable(), i, 0)),
+                                           table.getCell(i, 0),
                                            payseraValue,
                                            bankValue));
-                Elements.scrollIntoView(cellsOfRow.get(0), getDriver());
+                Elements.scrollIntoView(Elements.tables.getTableCell(calculatorScreen.getExchangeRateTable(), i, 0), getDriver());
                 Toolbox.takeScreenshot(getDriver(), org.junit.runner.Description.createTestDescription(CurrencyExchangeHeaderTest.class,
                                                                                                        "testLossIndicatorIsShown"));
             }
@@ -158,8 +174,38 @@ public class CurrencyExchangeHeaderTest extends TestBase
     }
 
 
+    @DisplayName("Check if the filter header and the 'Exchange rate' table header look as expected")
+    @Description("Compare screenshots of the filter header and of the 'Exchange rate' table header with their visual baselines")
+    @ScreenState(preserved = true)
+    @Test
+    public void testHeadersMatchVisualBaselines()
+    {
+        // Only reads the page - as a preserved test it runs first for its state, so the screenshots are taken on a freshly loaded page
+        Assume.assumeTrue(String.format("No visual baselines for [%s] in [%s], record them with -Dvisual.update=true",
+                                        Toolbox.getBrowserName(getDriver()), VisualCheck.BASELINES_DIR_NAME),
+                          VisualCheck.hasBaselines(getDriver(), "filter-header", "exchange-rate-table-header"));
+        calculatorScreen.waitForExchangeRateTableToLoad();
+        final ErrorLog errorLog = new ErrorLog();
+        Allure.step("Compare the filter header with its baseline");
+        final VisualCheck.Result filterHeader = VisualCheck.compare("filter-header", calculatorScreen.getFilterHeader(), getDriver());
+        if (!filterHeader.isMatching())
+        {
+            errorLog.add(filterHeader.describe());
+        }
+        Allure.step("Compare the 'Exchange rate' table header with its baseline");
+        final VisualCheck.Result tableHeader = VisualCheck.compare("exchange-rate-table-header",
+                                                                     calculatorScreen.getExchangeRateTableHeader(), getDriver());
+        if (!tableHeader.isMatching())
+        {
+            errorLog.add(tableHeader.describe());
+        }
+        errorLog.validate();
+    }
+
+
     @DisplayName("Check if it is possible to add invalid parameters through URL")
     @Description("Verify that an error is given if a user tries to add both a sell and buy parameters through the URL")
+    @ScreenState
     @Test
     public void checkIfItIsPossibleToAddBuyAndSellParametersThroughUrl()
     {
@@ -0,0 +1,79 @@
+package org.example.tests;
+
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.example.base.CurrencyPairSweep;
+import org.example.base.TestBase;
+import org.example.screens.OnlineCurrencyExchangeCalculatorScreen;
+import org.example.util.AttachmentSink;
+import org.example.util.ErrorLog;
+import org.example.util.ExchangeRateTable;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.Description;
+import io.qameta.allure.junit4.DisplayName;
+
+
+/**
+ * Converts an amount for every pair of currencies offered by the 'Currency exchange calculator', see {@link CurrencyPairSweep}. Meant
+ * for nightly runs, so it is skipped unless {@code -Dsweep.pairs} is set. The currencies are taken from the 'Exchange rate' table, or
+ * from {@code -Dsweep.currencies} (comma separated codes) if given
+ *
+ * @author l.milov
+ */
+public class CurrencyPairSweepTest extends TestBase
+{
+
+    private static final String AMOUNT = System.getProperty("sweep.amount", "100");
+
+    @Before
+    public void beforeEach()
+    {
+        Assume.assumeTrue("The currency pair sweep runs only with -Dsweep.pairs", Boolean.getBoolean("sweep.pairs"));
+    }
+
+
+    @DisplayName("Check the conversion of all currency pairs")
+    @Description("Verify that an amount is converted without errors for every pair of currencies in the 'Sell' and 'Buy' currency menus")
+    @Test
+    public void testAllCurrencyPairs()
+    {
+        final List<String> currencies = getCurrencies();
+        Allure.parameter("currencies", String.join(",", currencies));
+        Allure.parameter("amount", AMOUNT);
+        final List<CurrencyPairSweep.PairResult> results = CurrencyPairSweep.run(getDriver(), currencies, AMOUNT, null);
+        final List<CurrencyPairSweep.PairResult> failed = results.stream().filter(result -> result.getError() != null).collect(Collectors.toList());
+        if (!results.isEmpty())
+        {
+            // The results have already been streamed to the file, pair by pair
+            AttachmentSink.attach("Currency pair sweep", "text/plain", ".jsonl", CurrencyPairSweep.getResultsFile());
+        }
+        Allure.step(String.format("Verify that all [%s] currency pairs were converted", results.size()));
+        final ErrorLog errorLog = new ErrorLog();
+        failed.forEach(result -> errorLog.add(result.toString()));
+        errorLog.validate();
+    }
+
+
+    private List<String> getCurrencies()
+    {
+        final String currencies = System.getProperty("sweep.currencies");
+        if (StringUtils.isNotBlank(currencies))
+        {
+            return Arrays.stream(StringUtils.split(currencies, ',')).map(String::trim).collect(Collectors.toList());
+        }
+        final OnlineCurrencyExchangeCalculatorScreen calculatorScreen = new OnlineCurrencyExchangeCalculatorScreen(getDriver());
+        calculatorScreen.toScreen();
+        calculatorScreen.waitForExchangeRateTableToLoad();
+        final List<List<String>> rows = ExchangeRateTable.extract(getDriver(), calculatorScreen.getExchangeRateTable()).getRows();
+        // The last row holds no rates
+        return rows.subList(0, rows.size() - 1).stream().map(row -> row.get(0)).collect(Collectors.toList());
+    }
+}
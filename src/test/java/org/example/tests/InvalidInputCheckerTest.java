@@ -4,6 +4,7 @@ package org.example.tests;
 import java.util.Arrays;
 import java.util.Collection;
 
+import org.example.base.ParallelParameterized;
 import org.example.base.TestBase;
 import org.example.misc.GenericTestError;
 import org.example.misc.ScreenType;
@@ -13,7 +14,6 @@ import org.example.util.Toolbox;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameter;
 import org.junit.runners.Parameterized.Parameters;
 import org.openqa.selenium.By;
@@ -26,11 +26,12 @@ import io.qameta.allure.Allure;
 /**
  * A class which contain parameterized tests for checking invalid inputs. Can be used for different screens. A new method
  * should be created for each place where input should be checked, and the method name should be given as a parameter. The
- * {@link this#testInvalidInput()} will then invoke said method which will test the app.
- * 
+ * {@link this#testInvalidInput()} will then invoke said method which will test the app. The rows run at the same time, each with its
+ * own session
+ *
  * @author l.milov
  */
-@RunWith(Parameterized.class)
+@RunWith(ParallelParameterized.class)
 public class InvalidInputCheckerTest extends TestBase
 {
     @Parameters(name = "Check if invalid inputs are not allowed (using input [{0}] for screen [{1}])")
@@ -0,0 +1,83 @@
+package org.example.tests;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.example.base.TestBase;
+import org.example.screens.OnlineCurrencyExchangeCalculatorScreen;
+import org.junit.Assume;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.Description;
+import io.qameta.allure.junit4.DisplayName;
+
+
+/**
+ * Checks the scenarios sharing a browser session in tabs (see {@link TestBase#openSiblingTab()}). Skipped unless the tabs are
+ * enabled, e.g. with {@code -Dsession.tabs=2}
+ *
+ * @author l.milov
+ */
+public class TabMultiplexerTest extends TestBase
+{
+
+    private static final int TIMEOUT_IN_SECONDS = 60;
+
+    @DisplayName("Check if two tabs of a session can wait for the 'Exchange rate' table at the same time")
+    @Description("Load the 'Currency exchange calculator' in two tabs of the same session at the same time, and verify that both tabs see the "
+                 + "'Exchange rate' table loaded - a wait in one tab must not keep the other tab (or the condition it polls) from the session")
+    @Test
+    public void testTabsWaitAtTheSameTime() throws Throwable
+    {
+        final WebDriver otherTab = openSiblingTab();
+        Assume.assumeTrue("The scenarios get a session each (run with -Dsession.tabs=2 or more), or the session of the test is full",
+                          otherTab != null);
+        try
+        {
+            Allure.step("Load the 'Exchange rate' table in both tabs at the same time");
+            final ExecutorService executor = Executors.newFixedThreadPool(2);
+            try
+            {
+                final List<Future<?>> loads = new ArrayList<>();
+                for (final WebDriver tab : Arrays.asList(getDriver(), otherTab))
+                {
+                    loads.add(executor.submit(() ->
+                    {
+                        final OnlineCurrencyExchangeCalculatorScreen calculatorScreen = new OnlineCurrencyExchangeCalculatorScreen(tab);
+                        calculatorScreen.toScreen();
+                        calculatorScreen.waitForExchangeRateTableToLoad();
+                    }));
+                }
+                for (final Future<?> load : loads)
+                {
+                    try
+                    {
+                        load.get(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+                    }
+                    catch (final ExecutionException e)
+                    {
+                        // The failure of the tab, e.g. a ConditionTimeoutException of its wait
+                        throw e.getCause();
+                    }
+                }
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+        finally
+        {
+            closeSession(otherTab);
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package org.example.util;
+
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+
+/**
+ * An incremental store of the Allure history. Each run appends a small delta (statistics, duration, retries, categories and the status of
+ * each test) to {@code runs.jsonl} in the store directory. Runs older than the last {@code keep} ones are compacted into rolling totals in
+ * {@code aggregate.json}, so the store does not grow with the number of runs. From the store, the history files Allure expects
+ * ({@code history.json} and the {@code *-trend.json} files) are written into the {@code history} directory of the results, before the
+ * report is generated. They only cover the previous runs - Allure adds the current run itself when it generates the report. Run with
+ * {@code mvn test-compile exec:java -P allure-history}
+ *
+ * @author l.milov
+ */
+public class AllureHistoryStore
+{
+
+    private static final String[] STATUSES = {"failed", "broken", "skipped", "passed", "unknown"};
+    private static final String RUNS_FILE = "runs.jsonl";
+    private static final String AGGREGATE_FILE = "aggregate.json";
+
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final Path resultsDir;
+    private final Path storeDir;
+    private final int keep;
+
+    public AllureHistoryStore(final Path resultsDir, final Path storeDir, final int keep)
+    {
+        this.resultsDir = resultsDir;
+        this.storeDir = storeDir;
+        this.keep = Math.max(keep, 1);
+    }
+
+
+    /**
+     * @param args optional: the results directory (default {@code target/allure-results}), the store directory (default
+     *            {@code allure-history}) and the number of runs kept in full (default 20)
+     */
+    public static void main(final String[] args)
+    {
+        final AllureHistoryStore store = new AllureHistoryStore(Paths.get(args.length > 0 ? args[0] : "target/allure-results"),
+                                                                Paths.get(args.length > 1 ? args[1] : "allure-history"),
+                                                                args.length > 2 ? Integer.parseInt(args[2]) : 20);
+        // The history is written before the current run is added, so that the report does not count the run twice
+        store.writeHistory();
+        store.appendRun();
+        store.compact();
+    }
+
+
+    /**
+     * Reads the results of the current run and appends them as a delta to the store
+     */
+    public void appendRun()
+    {
+        final List<JsonNode> results = readResults();
+        final ObjectNode run = mapper.createObjectNode();
+        run.put("buildOrder", getLastBuildOrder() + 1);
+        run.put("timestamp", System.currentTimeMillis());
+
+        final ObjectNode statistic = createStatistic();
+        final ObjectNode categories = mapper.createObjectNode();
+        final ObjectNode tests = mapper.createObjectNode();
+        final Map<String, Integer> resultsPerTest = new LinkedHashMap<>();
+        long start = Long.MAX_VALUE;
+        long stop = 0;
+        for (final JsonNode result : results)
+        {
+            final String historyId = result.path("historyId").asText(result.path("fullName").asText());
+            final String status = result.path("status").asText("unknown");
+            resultsPerTest.merge(historyId, 1, Integer::sum);
+            start = Math.min(start, result.path("start").asLong(Long.MAX_VALUE));
+            stop = Math.max(stop, result.path("stop").asLong(0));
+            // Retries are reported as several results with the same history ID, the latest one counts
+            final JsonNode previous = tests.get(historyId);
+            if (previous == null || previous.path("start").asLong() <= result.path("start").asLong())
+            {
+                final ObjectNode test = mapper.createObjectNode();
+                test.put("uid", result.path("uuid").asText());
+                test.put("status", status);
+                test.put("start", result.path("start").asLong());
+                test.put("stop", result.path("stop").asLong());
+                test.put("duration", result.path("stop").asLong() - result.path("start").asLong());
+                tests.set(historyId, test);
+            }
+        }
+        tests.fields().forEachRemaining(entry ->
+        {
+            final String status = entry.getValue().path("status").asText();
+            increment(statistic, status, 1);
+            increment(statistic, "total", 1);
+            final String category = getCategory(status);
+            if (category != null)
+            {
+                increment(categories, category, 1);
+            }
+        });
+        run.set("statistic", statistic);
+        run.put("duration", results.isEmpty() ? 0 : stop - start);
+        final ObjectNode retry = mapper.createObjectNode();
+        retry.put("run", tests.size());
+        retry.put("retry", resultsPerTest.values().stream().mapToInt(count -> count - 1).sum());
+        run.set("retry", retry);
+        run.set("categories", categories);
+        run.set("tests", tests);
+
+        try
+        {
+            Files.createDirectories(storeDir);
+            Files.write(storeDir.resolve(RUNS_FILE),
+                        Collections.singletonList(mapper.writer().without(SerializationFeature.INDENT_OUTPUT).writeValueAsString(run)),
+                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("Could not append the run to the history store", e);
+        }
+    }
+
+
+    /**
+     * Folds all runs but the last {@code keep} ones into the aggregate
+     */
+    public void compact()
+    {
+        final List<ObjectNode> runs = readRuns();
+        if (runs.size() <= keep)
+        {
+            return;
+        }
+        final ObjectNode aggregate = readAggregate();
+        final List<ObjectNode> compacted = runs.subList(0, runs.size() - keep);
+        for (final ObjectNode run : compacted)
+        {
+            increment(aggregate, "runs", 1);
+            if (!aggregate.has("firstBuildOrder"))
+            {
+                aggregate.put("firstBuildOrder", run.path("buildOrder").asLong());
+            }
+            aggregate.put("lastBuildOrder", run.path("buildOrder").asLong());
+            add(aggregate.with("statistic"), run.path("statistic"));
+            increment(aggregate, "duration", run.path("duration").asLong());
+            add(aggregate.with("retry"), run.path("retry"));
+            add(aggregate.with("categories"), run.path("categories"));
+            run.path("tests").fields().forEachRemaining(entry ->
+            {
+                final ObjectNode testStatistic = aggregate.with("tests").with(entry.getKey());
+                increment(testStatistic, entry.getValue().path("status").asText(), 1);
+                increment(testStatistic, "total", 1);
+            });
+        }
+        try
+        {
+            mapper.writeValue(storeDir.resolve(AGGREGATE_FILE).toFile(), aggregate);
+            final List<String> remaining = new ArrayList<>();
+            for (final ObjectNode run : runs.subList(runs.size() - keep, runs.size()))
+            {
+                remaining.add(mapper.writer().without(SerializationFeature.INDENT_OUTPUT).writeValueAsString(run));
+            }
+            Files.write(storeDir.resolve(RUNS_FILE), remaining, StandardCharsets.UTF_8);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("Could not compact the history store", e);
+        }
+    }
+
+
+    /**
+     * Writes the history and trend files of the runs in the store, as expected by Allure, into the {@code history} directory of the results
+     */
+    public void writeHistory()
+    {
+        final List<ObjectNode> runs = readRuns();
+        Collections.reverse(runs);
+        final ObjectNode aggregate = readAggregate();
+        final long compactedRuns = aggregate.path("runs").asLong(0);
+
+        final ArrayNode historyTrend = mapper.createArrayNode();
+        final ArrayNode durationTrend = mapper.createArrayNode();
+        final ArrayNode retryTrend = mapper.createArrayNode();
+        final ArrayNode categoriesTrend = mapper.createArrayNode();
+        for (final ObjectNode run : runs)
+        {
+            final String name = "Run #" + run.path("buildOrder").asLong();
+            historyTrend.add(trendEntry(run, name, run.path("statistic")));
+            durationTrend.add(trendEntry(run, name, mapper.createObjectNode().put("duration", run.path("duration").asLong())));
+            retryTrend.add(trendEntry(run, name, run.path("retry")));
+            categoriesTrend.add(trendEntry(run, name, run.path("categories")));
+        }
+        if (compactedRuns > 0)
+        {
+            // The compacted runs are shown as a single entry with their mean values
+            final String name = String.format("Runs #%d-#%d (mean)", aggregate.path("firstBuildOrder").asLong(),
+                                              aggregate.path("lastBuildOrder").asLong());
+            historyTrend.add(trendEntry(aggregate, name, mean(aggregate.path("statistic"), compactedRuns)));
+            durationTrend.add(trendEntry(aggregate, name, mapper.createObjectNode().put("duration",
+                                                                                         aggregate.path("duration").asLong() / compactedRuns)));
+            retryTrend.add(trendEntry(aggregate, name, mean(aggregate.path("retry"), compactedRuns)));
+            categoriesTrend.add(trendEntry(aggregate, name, mean(aggregate.path("categories"), compactedRuns)));
+        }
+
+        final ObjectNode history = mapper.createObjectNode();
+        aggregate.path("tests").fields().forEachRemaining(entry ->
+        {
+            final ObjectNode test = history.with(entry.getKey());
+            add(test.with("statistic"), entry.getValue());
+            test.withArray("items");
+        });
+        for (final ObjectNode run : runs)
+        {
+            run.path("tests").fields().forEachRemaining(entry ->
+            {
+                final ObjectNode test = history.with(entry.getKey());
+                final ObjectNode statistic = test.with("statistic");
+                increment(statistic, entry.getValue().path("status").asText(), 1);
+                increment(statistic, "total", 1);
+                final ObjectNode item = mapper.createObjectNode();
+                item.put("uid", entry.getValue().path("uid").asText());
+                item.put("status", entry.getValue().path("status").asText());
+                item.set("time", mapper.createObjectNode()
+                                       .put("start", entry.getValue().path("start").asLong())
+                                       .put("stop", entry.getValue().path("stop").asLong())
+                                       .put("duration", entry.getValue().path("duration").asLong()));
+                test.withArray("items").add(item);
+            });
+        }
+        history.fields().forEachRemaining(entry -> fillStatistic((ObjectNode)entry.getValue().with("statistic")));
+
+        try
+        {
+            final Path historyDir = resultsDir.resolve("history");
+            Files.createDirectories(historyDir);
+            mapper.writeValue(historyDir.resolve("history.json").toFile(), history);
+            mapper.writeValue(historyDir.resolve("history-trend.json").toFile(), historyTrend);
+            mapper.writeValue(historyDir.resolve("duration-trend.json").toFile(), durationTrend);
+            mapper.writeValue(historyDir.resolve("retry-trend.json").toFile(), retryTrend);
+            mapper.writeValue(historyDir.resolve("categories-trend.json").toFile(), categoriesTrend);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("Could not write the Allure history", e);
+        }
+    }
+
+
+    private List<JsonNode> readResults()
+    {
+        if (!Files.isDirectory(resultsDir))
+        {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(resultsDir))
+        {
+            final List<JsonNode> results = new ArrayList<>();
+            for (final Path file : files.filter(path -> path.getFileName().toString().endsWith("-result.json")).collect(Collectors.toList()))
+            {
+                results.add(mapper.readTree(file.toFile()));
+            }
+            return results;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("Could not read the Allure results", e);
+        }
+    }
+
+
+    private List<ObjectNode> readRuns()
+    {
+        final Path runsFile = storeDir.resolve(RUNS_FILE);
+        if (!Files.exists(runsFile))
+        {
+            return new ArrayList<>();
+        }
+        try
+        {
+            final List<ObjectNode> runs = new ArrayList<>();
+            for (final String line : Files.readAllLines(runsFile, StandardCharsets.UTF_8))
+            {
+                if (!line.trim().isEmpty())
+                {
+                    runs.add((ObjectNode)mapper.readTree(line));
+                }
+            }
+            return runs;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("Could not read the history store", e);
+        }
+    }
+
+
+    private ObjectNode readAggregate()
+    {
+        final Path aggregateFile = storeDir.resolve(AGGREGATE_FILE);
+        try
+        {
+            return Files.exists(aggregateFile) ? (ObjectNode)mapper.readTree(aggregateFile.toFile()) : mapper.createObjectNode();
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("Could not read the history aggregate", e);
+        }
+    }
+
+
+    private long getLastBuildOrder()
+    {
+        final List<ObjectNode> runs = readRuns();
+        return runs.isEmpty() ? readAggregate().path("lastBuildOrder").asLong(0) : runs.get(runs.size() - 1).path("buildOrder").asLong();
+    }
+
+
+    private ObjectNode trendEntry(final JsonNode source, final String name, final JsonNode data)
+    {
+        final ObjectNode entry = mapper.createObjectNode();
+        entry.put("buildOrder", source.path(source.has("buildOrder") ? "buildOrder" : "lastBuildOrder").asLong());
+        entry.put("reportName", name);
+        entry.set("data", data);
+        return entry;
+    }
+
+
+    private ObjectNode createStatistic()
+    {
+        final ObjectNode statistic = mapper.createObjectNode();
+        fillStatistic(statistic);
+        return statistic;
+    }
+
+
+    private static void fillStatistic(final ObjectNode statistic)
+    {
+        for (final String status : STATUSES)
+        {
+            if (!statistic.has(status))
+            {
+                statistic.put(status, 0);
+            }
+        }
+        if (!statistic.has("total"))
+        {
+            statistic.put("total", 0);
+        }
+    }
+
+
+    private ObjectNode mean(final JsonNode totals, final long runs)
+    {
+        final ObjectNode mean = mapper.createObjectNode();
+        totals.fields().forEachRemaining(entry -> mean.put(entry.getKey(), Math.round((double)entry.getValue().asLong() / runs)));
+        return mean;
+    }
+
+
+    private static void add(final ObjectNode target, final JsonNode values)
+    {
+        final Iterator<Map.Entry<String, JsonNode>> fields = values.fields();
+        while (fields.hasNext())
+        {
+            final Map.Entry<String, JsonNode> field = fields.next();
+            increment(target, field.getKey(), field.getValue().asLong());
+        }
+    }
+
+
+    private static void increment(final ObjectNode node, final String field, final long value)
+    {
+        node.put(field, node.path(field).asLong(0) + value);
+    }
+
+
+    /**
+     * @return the default Allure category of a status, or {@code null} if the status does not belong to a category
+     */
+    private static String getCategory(final String status)
+    {
+        switch (status)
+        {
+            case "failed":
+                return "Product defects";
+            case "broken":
+                return "Test defects";
+            default:
+                return null;
+        }
+    }
+}
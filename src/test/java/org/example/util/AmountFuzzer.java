@@ -0,0 +1,134 @@
+package org.example.util;
+
+
+import java.util.Random;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Generates inputs for amount fields (numeric edge cases, locale specific formats, overflowing numbers and injection attempts) and
+ * shrinks inputs for which a check fails to a minimal failing input. The generator is seeded, so a failing run can be repeated with the
+ * same seed
+ *
+ * @author l.milov
+ */
+public class AmountFuzzer
+{
+
+    private static final String[] NUMERIC_EDGES = {"0", "-0", "0.0", "00000150", "0.000000001", "1e3", "1E-7", "9223372036854775807",
+                                                   "9223372036854775808", "-9223372036854775809", "1.7976931348623157E308", "4.9E-324",
+                                                   "NaN", "Infinity", "-Infinity", ".5", "5.", "+150"};
+    private static final String[] LOCALE_FORMATS = {"1,5", "1.000,50", "1 000", "1\u00A0000", "1'000.50", "1_000",
+                                                    "\u0661\u0665\u0660", "\u0967\u096B\u0966", "\uFF11\uFF15\uFF10", "150\u20AC", "$150",
+                                                    "150 BGN"};
+    private static final String[] INJECTIONS = {"<script>alert(1)</script>", "' OR '1'='1", "{{7*7}}", "${7*7}", "%00",
+                                                "150;DROP TABLE rates", "../../etc/passwd", "&#49;&#53;&#48;", "\u202E051", "150\n150",
+                                                "150\t", " 150 "};
+    private static final String SPECIAL_CHARACTERS = "-+.,eE /\\^*%$#@!()[]{}<>'\"`~|&;:?=_";
+
+    private final Random random;
+
+    public AmountFuzzer(final long seed)
+    {
+        this.random = new Random(seed);
+    }
+
+
+    /**
+     * @return the next generated input
+     */
+    public String next()
+    {
+        switch (random.nextInt(5))
+        {
+            case 0:
+                return pick(NUMERIC_EDGES);
+            case 1:
+                return pick(LOCALE_FORMATS);
+            case 2:
+                // Overflow - long runs of digits, optionally with a fraction
+                final String digits = randomDigits(20 + random.nextInt(380));
+                return random.nextBoolean() ? digits : digits + "." + randomDigits(1 + random.nextInt(50));
+            case 3:
+                return pick(INJECTIONS);
+            default:
+                return randomMix(1 + random.nextInt(12));
+        }
+    }
+
+
+    /**
+     * Shrinks a failing input by repeatedly removing chunks of it (starting with halves, down to single characters), as long as the
+     * input keeps failing. The checks are usually expensive (e.g. a page reload each), so their number is limited - the input shrunk so
+     * far is returned once the limit is reached
+     *
+     * @param input an input for which the check fails
+     * @param isFailing the check, returns {@code true} if the given input still fails
+     * @param maxChecks the maximum number of checks
+     * @return the smallest failing input that was found
+     */
+    public static String shrink(final String input, final Predicate<String> isFailing, final int maxChecks)
+    {
+        String current = input;
+        int chunkSize = Math.max(current.length() / 2, 1);
+        int checks = 0;
+        while (chunkSize >= 1 && !current.isEmpty())
+        {
+            boolean isShrunk = false;
+            for (int start = 0; start < current.length(); start += chunkSize)
+            {
+                final String candidate = current.substring(0, start) + current.substring(Math.min(start + chunkSize, current.length()));
+                if (candidate.equals(current))
+                {
+                    continue;
+                }
+                if (checks++ >= maxChecks)
+                {
+                    return current;
+                }
+                if (isFailing.test(candidate))
+                {
+                    current = candidate;
+                    isShrunk = true;
+                    break;
+                }
+            }
+            if (!isShrunk)
+            {
+                chunkSize /= 2;
+            }
+        }
+        return current;
+    }
+
+
+    private String pick(final String[] values)
+    {
+        return values[random.nextInt(values.length)];
+    }
+
+
+    private String randomDigits(final int length)
+    {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+        {
+            builder.append((char)('0' + random.nextInt(10)));
+        }
+        return StringUtils.stripStart(builder.toString(), "0").isEmpty() ? "1" + builder : builder.toString();
+    }
+
+
+    private String randomMix(final int length)
+    {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+        {
+            builder.append(random.nextInt(3) == 0 ? SPECIAL_CHARACTERS.charAt(random.nextInt(SPECIAL_CHARACTERS.length()))
+                                                  : (char)('0' + random.nextInt(10)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,239 @@
+package org.example.util;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.util.PropertiesUtils;
+
+
+/**
+ * Writes Allure attachments straight to the results directory through NIO channels, instead of passing whole payloads to
+ * {@link Allure#addAttachment(String, InputStream)}. Only a fixed size buffer is held in the heap, whatever the size of the attachment.
+ * Text payloads can be gzip compressed ({@code allure.attachments.compress}) - only those over
+ * {@code allure.attachments.compress.threshold.kb} (256 KB by default), as Allure cannot show a compressed attachment inline. The total
+ * size of the attachments of a run is limited by {@code allure.attachments.quota.mb} (512 MB by default) - attachments over the quota are
+ * skipped or truncated, with a note in the report
+ *
+ * @author l.milov
+ */
+public class AttachmentSink
+{
+
+    private static final Path RESULTS_DIR = Paths.get(PropertiesUtils.loadAllureProperties()
+                                                                     .getProperty("allure.results.directory", "target/allure-results"));
+    private static final long QUOTA_IN_BYTES = Long.getLong("allure.attachments.quota.mb", 512) * 1024 * 1024;
+    private static final boolean IS_COMPRESSED = Boolean.getBoolean("allure.attachments.compress");
+    /** Types which are already compressed and do not benefit from gzip */
+    private static final List<String> COMPRESSED_TYPES = Arrays.asList("image/png", "image/jpeg", "image/gif", "video/webm", "application/zip",
+                                                                       "application/gzip");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Compressible payloads up to this size are kept as they are. Also the size of the buffer used for them */
+    private static final int COMPRESSION_THRESHOLD = Integer.getInteger("allure.attachments.compress.threshold.kb", 256) * 1024;
+
+    private static final AtomicLong writtenBytes = new AtomicLong();
+
+    private AttachmentSink()
+    {
+    }
+
+
+    /**
+     * Attaches a file to the current test case or step, copying it channel to channel
+     *
+     * @param name the name of the attachment
+     * @param type the MIME type of the attachment
+     * @param extension the file extension, including the dot (e.g. '.png')
+     * @param file the file to be attached
+     */
+    public static void attach(final String name, final String type, final String extension, final Path file)
+    {
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (isCompressible(type))
+            {
+                write(name, type, extension, source);
+                return;
+            }
+            final long size = source.size();
+            if (!reserve(size))
+            {
+                Allure.step(String.format("Attachment [%s] (%d bytes) was skipped, as the attachment quota of the run was reached", name, size));
+                return;
+            }
+            try (FileChannel target = FileChannel.open(prepare(name, type, extension), StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+            {
+                long position = 0;
+                while (position < size)
+                {
+                    position += source.transferTo(position, size - position, target);
+                }
+            }
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(String.format("Could not attach [%s] to the Allure report", name), e);
+        }
+    }
+
+
+    /**
+     * Attaches the content of a stream to the current test case or step. The stream is read in chunks until it ends or the quota of the
+     * run is reached, in which case the attachment is truncated
+     *
+     * @see this#attach(String, String, String, Path)
+     */
+    public static void attach(final String name, final String type, final String extension, final InputStream content)
+    {
+        try (ReadableByteChannel source = Channels.newChannel(content))
+        {
+            write(name, type, extension, source);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(String.format("Could not attach [%s] to the Allure report", name), e);
+        }
+    }
+
+
+    /**
+     * Attaches a text to the current test case or step
+     *
+     * @see this#attach(String, String, String, Path)
+     */
+    public static void attachText(final String name, final String text)
+    {
+        attach(name, "text/plain", ".txt", new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+
+    /**
+     * @return the number of attachment bytes written during the run (before compression)
+     */
+    public static long getWrittenBytes()
+    {
+        return writtenBytes.get();
+    }
+
+
+    /**
+     * @return the Allure results directory of the run
+     */
+    public static Path getResultsDir()
+    {
+        return RESULTS_DIR;
+    }
+
+
+    /**
+     * Writes the content of a channel as an attachment. The first buffer is read before the attachment is registered, so that a payload
+     * which fits in it is not compressed, and an attachment over the quota is skipped instead of being left empty
+     */
+    private static void write(final String name, final String type, final String extension, final ReadableByteChannel source) throws IOException
+    {
+        final boolean isCompressible = isCompressible(type);
+        final ByteBuffer buffer = ByteBuffer.allocate(isCompressible ? Math.max(COMPRESSION_THRESHOLD, BUFFER_SIZE) : BUFFER_SIZE);
+        boolean isEnded = fill(source, buffer);
+        buffer.flip();
+        if (!reserve(buffer.remaining()))
+        {
+            Allure.step(String.format("Attachment [%s] was skipped, as the attachment quota of the run was reached", name));
+            return;
+        }
+        final boolean isCompressed = isCompressible && !isEnded;
+        final Path target = prepare(name, isCompressed ? "application/gzip" : type, isCompressed ? extension + ".gz" : extension);
+        boolean isTruncated = false;
+        try (OutputStream fileStream = Files.newOutputStream(target);
+             OutputStream stream = isCompressed ? new GZIPOutputStream(fileStream, BUFFER_SIZE) : fileStream;
+             WritableByteChannel channel = Channels.newChannel(stream))
+        {
+            while (true)
+            {
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+                if (isEnded)
+                {
+                    break;
+                }
+                isEnded = fill(source, buffer);
+                buffer.flip();
+                if (!reserve(buffer.remaining()))
+                {
+                    isTruncated = true;
+                    break;
+                }
+            }
+        }
+        if (isTruncated)
+        {
+            Allure.step(String.format("Attachment [%s] was truncated, as the attachment quota of the run was reached", name));
+        }
+    }
+
+
+    /**
+     * Reads from a channel until the buffer is full or the channel has ended
+     *
+     * @return {@code true} if the channel has ended, {@code false} otherwise
+     */
+    private static boolean fill(final ReadableByteChannel source, final ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (source.read(buffer) < 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Registers the attachment with the current test case or step and returns the file to which its content should be written
+     */
+    private static Path prepare(final String name, final String type, final String extension) throws IOException
+    {
+        Files.createDirectories(RESULTS_DIR);
+        return RESULTS_DIR.resolve(Allure.getLifecycle().prepareAttachment(name, type, extension));
+    }
+
+
+    private static boolean reserve(final long bytes)
+    {
+        final long total = writtenBytes.addAndGet(bytes);
+        if (total > QUOTA_IN_BYTES)
+        {
+            writtenBytes.addAndGet(-bytes);
+            return false;
+        }
+        return true;
+    }
+
+
+    private static boolean isCompressible(final String type)
+    {
+        return IS_COMPRESSED && !COMPRESSED_TYPES.contains(type);
+    }
+}
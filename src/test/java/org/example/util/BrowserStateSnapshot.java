@@ -0,0 +1,220 @@
+package org.example.util;
+
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.example.misc.GenericTestError;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import io.qameta.allure.Allure;
+
+
+/**
+ * An immutable snapshot of the browser state (cookies, localStorage, sessionStorage and the current URL), which can be restored into any
+ * session. Useful for expensive preconditions, such as switching the country through the page footer - the precondition is executed once
+ * per run and every following test only restores its result
+ *
+ * @author l.milov
+ */
+public class BrowserStateSnapshot
+{
+
+    private static final String READ_STORAGE_SCRIPT =
+        "var read = function(storage) { var result = {}; for (var i = 0; i < storage.length; i++) { var key = storage.key(i); "
+        + "result[key] = storage.getItem(key); } return result; }; return [read(window.localStorage), read(window.sessionStorage)];";
+
+    private static final String WRITE_STORAGE_SCRIPT =
+        "var write = function(storage, values) { storage.clear(); for (var key in values) { storage.setItem(key, values[key]); } }; "
+        + "write(window.localStorage, arguments[0]); write(window.sessionStorage, arguments[1]);";
+
+    private static final String WRITE_LOCAL_STORAGE_SCRIPT =
+        "window.localStorage.clear(); for (var key in arguments[0]) { window.localStorage.setItem(key, arguments[0][key]); }";
+
+    /** Snapshots created during the run, by their key */
+    private static final Map<String, BrowserStateSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    private final String url;
+    private final Set<Cookie> cookies;
+    private final Map<String, String> localStorage;
+    private final Map<String, String> sessionStorage;
+
+    private BrowserStateSnapshot(final String url, final Set<Cookie> cookies, final Map<String, String> localStorage,
+                                 final Map<String, String> sessionStorage)
+    {
+        this.url = url;
+        this.cookies = Collections.unmodifiableSet(new HashSet<>(cookies));
+        this.localStorage = Collections.unmodifiableMap(localStorage);
+        this.sessionStorage = Collections.unmodifiableMap(sessionStorage);
+    }
+
+
+    /**
+     * Captures the current state of the browser
+     *
+     * @param driver a {@link WebDriver} instance
+     * @return the captured snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public static BrowserStateSnapshot capture(final WebDriver driver)
+    {
+        Objects.requireNonNull(driver, "Parameter [driver] cannot be null");
+        final List<Map<String, Object>> storages = (List<Map<String, Object>>)((JavascriptExecutor)driver).executeScript(READ_STORAGE_SCRIPT);
+        return new BrowserStateSnapshot(driver.getCurrentUrl(),
+                                        driver.manage().getCookies(),
+                                        toStringMap(storages.get(0)),
+                                        toStringMap(storages.get(1)));
+    }
+
+
+    /**
+     * Restores the snapshot stored under a given key. If there is no such snapshot, the precondition is executed and its result is
+     * captured and stored under the key for the following tests
+     *
+     * @param key the key of the snapshot (e.g. 'country-LT')
+     * @param driver a {@link WebDriver} instance
+     * @param precondition the steps which bring the browser in the wanted state
+     */
+    public static void restoreOrCapture(final String key, final WebDriver driver, final Runnable precondition)
+    {
+        Objects.requireNonNull(key, "Parameter [key] cannot be null");
+        Objects.requireNonNull(precondition, "Parameter [precondition] cannot be null");
+        final BrowserStateSnapshot snapshot = snapshots.get(key);
+        if (snapshot != null)
+        {
+            Allure.step(String.format("Restore the browser state [%s]", key));
+            snapshot.restore(driver);
+        }
+        else
+        {
+            precondition.run();
+            snapshots.put(key, capture(driver));
+        }
+    }
+
+
+    /**
+     * Creates a snapshot without cookies and storage entries, which clears the state of an origin when restored
+     *
+     * @param url a URL on the origin of the snapshot
+     * @return the empty snapshot
+     */
+    public static BrowserStateSnapshot empty(final String url)
+    {
+        Objects.requireNonNull(url, "Parameter [url] cannot be null");
+        return new BrowserStateSnapshot(url, Collections.emptySet(), new HashMap<>(), new HashMap<>());
+    }
+
+
+    /**
+     * Removes all stored snapshots
+     */
+    public static void clearSnapshots()
+    {
+        snapshots.clear();
+    }
+
+
+    /**
+     * Restores the snapshot into a given session. The session is first brought to the origin of the snapshot URL (cookies and storages
+     * can only be set for the current origin), then the state is written and the snapshot URL is loaded
+     *
+     * @param driver a {@link WebDriver} instance
+     */
+    public void restore(final WebDriver driver)
+    {
+        Objects.requireNonNull(driver, "Parameter [driver] cannot be null");
+        final String origin = getOrigin(url);
+        if (!StringUtils.startsWith(driver.getCurrentUrl(), origin))
+        {
+            // A lightweight, non-scripted page on the same origin
+            driver.get(origin.concat("/robots.txt"));
+        }
+        driver.manage().deleteAllCookies();
+        cookies.forEach(cookie -> driver.manage().addCookie(cookie));
+        ((JavascriptExecutor)driver).executeScript(WRITE_STORAGE_SCRIPT, localStorage, sessionStorage);
+        driver.get(url);
+    }
+
+
+    /**
+     * Restores the cookies and the localStorage of the snapshot into the page the session is on, without loading the snapshot URL. The
+     * sessionStorage is left as is, as it belongs to the window. Only the state of the current origin can be written, so nothing is
+     * restored when the session is on another origin than the snapshot
+     *
+     * @param driver a {@link WebDriver} instance
+     * @return {@code true} if the snapshot was restored, {@code false} if the session is on another origin
+     */
+    public boolean restoreInPlace(final WebDriver driver)
+    {
+        Objects.requireNonNull(driver, "Parameter [driver] cannot be null");
+        if (!StringUtils.startsWith(driver.getCurrentUrl(), getOrigin(url)))
+        {
+            return false;
+        }
+        driver.manage().deleteAllCookies();
+        cookies.forEach(cookie -> driver.manage().addCookie(cookie));
+        ((JavascriptExecutor)driver).executeScript(WRITE_LOCAL_STORAGE_SCRIPT, localStorage);
+        return true;
+    }
+
+
+    public String getUrl()
+    {
+        return url;
+    }
+
+
+    public Set<Cookie> getCookies()
+    {
+        return cookies;
+    }
+
+
+    public Map<String, String> getLocalStorage()
+    {
+        return localStorage;
+    }
+
+
+    public Map<String, String> getSessionStorage()
+    {
+        return sessionStorage;
+    }
+
+
+    private static Map<String, String> toStringMap(final Map<String, Object> values)
+    {
+        final Map<String, String> result = new HashMap<>();
+        if (values != null)
+        {
+            values.forEach((key, value) -> result.put(key, String.valueOf(value)));
+        }
+        return result;
+    }
+
+
+    private static String getOrigin(final String url)
+    {
+        try
+        {
+            final URL parsedUrl = new URL(url);
+            return parsedUrl.getProtocol() + "://" + parsedUrl.getAuthority();
+        }
+        catch (final MalformedURLException e)
+        {
+            throw new GenericTestError(String.format("The snapshot URL [%s] is not valid", url));
+        }
+    }
+}
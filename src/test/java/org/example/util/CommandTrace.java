@@ -0,0 +1,163 @@
+package org.example.util;
+
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A fixed-size ring buffer holding the last WebDriver commands executed in a session. Each entry keeps the command name, its target
+ * (locator, URL, script, etc...), the duration and a short result summary. All slots are allocated once, when the trace is created, and
+ * targets/results are kept as references, so they are only converted to text when the trace is flushed to the report
+ *
+ * @author l.milov
+ */
+public class CommandTrace
+{
+
+    /** Default number of commands kept in the trace, may be overridden by the {@code command.trace.size} system property */
+    private static final int DEFAULT_CAPACITY = 200;
+    private static final int MAX_TEXT_LENGTH = 120;
+
+    private final int capacity;
+    private final String[] commands;
+    private final Object[] targets;
+    private final Object[] results;
+    private final long[] startTimes;
+    private final long[] durations;
+
+    private int next;
+    private int size;
+    private int pending = -1;
+    private long pendingStart;
+
+    public CommandTrace()
+    {
+        this(Integer.getInteger("command.trace.size", DEFAULT_CAPACITY));
+    }
+
+
+    public CommandTrace(final int capacity)
+    {
+        this.capacity = Math.max(capacity, 0);
+        this.commands = new String[this.capacity];
+        this.targets = new Object[this.capacity];
+        this.results = new Object[this.capacity];
+        this.startTimes = new long[this.capacity];
+        this.durations = new long[this.capacity];
+    }
+
+
+    /**
+     * Records the start of a command. The slot is reused from the oldest entry once the buffer is full
+     *
+     * @param command the name of the command (e.g. 'findElement', 'click')
+     * @param target the target of the command (a locator, URL, element, etc...). Converted to text only when flushed
+     */
+    public void begin(final String command, final Object target)
+    {
+        if (capacity == 0)
+        {
+            return;
+        }
+        pending = next;
+        pendingStart = System.nanoTime();
+        commands[pending] = command;
+        targets[pending] = target;
+        results[pending] = null;
+        startTimes[pending] = System.currentTimeMillis();
+        durations[pending] = -1;
+        next = (next + 1) % capacity;
+        size = Math.min(size + 1, capacity);
+    }
+
+
+    /**
+     * Completes the last started command with a result summary
+     *
+     * @param result the result of the command (e.g. the returned text or a thrown exception). May be {@code null}
+     */
+    public void end(final Object result)
+    {
+        if (pending < 0)
+        {
+            return;
+        }
+        durations[pending] = System.nanoTime() - pendingStart;
+        results[pending] = result;
+        pending = -1;
+    }
+
+
+    /**
+     * Removes all entries from the trace. The allocated slots are kept for reuse
+     */
+    public void clear()
+    {
+        for (int i = 0; i < capacity; i++)
+        {
+            targets[i] = null;
+            results[i] = null;
+        }
+        next = 0;
+        size = 0;
+        pending = -1;
+    }
+
+
+    /**
+     * @return the number of commands currently held in the trace
+     */
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * Formats the trace as a table, oldest command first. Commands that did not complete are marked as 'PENDING'
+     *
+     * @return the text representation of the trace
+     */
+    public String format()
+    {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-24s | %10s | %-22s | %-60s | %s%n", "Started", "Took (ms)", "Command", "Target", "Result"));
+        final int first = (next - size + capacity) % Math.max(capacity, 1);
+        for (int i = 0; i < size; i++)
+        {
+            final int slot = (first + i) % capacity;
+            builder.append(String.format("%-24s | %10s | %-22s | %-60s | %s%n",
+                                         Instant.ofEpochMilli(startTimes[slot]),
+                                         durations[slot] < 0 ? "PENDING" : String.valueOf(TimeUnit.NANOSECONDS.toMillis(durations[slot])),
+                                         commands[slot],
+                                         abbreviate(targets[slot]),
+                                         abbreviate(results[slot])));
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * Adds the trace as a text attachment to the current Allure test case. Nothing is attached if the trace is empty
+     */
+    public void attachToReport()
+    {
+        if (size > 0)
+        {
+            AttachmentSink.attachText("WebDriver command trace", format());
+        }
+    }
+
+
+    private static String abbreviate(final Object value)
+    {
+        if (value == null)
+        {
+            return "";
+        }
+        final String text = (value instanceof Throwable ? value.getClass().getSimpleName() + ": " + ((Throwable)value).getMessage()
+                                                        : String.valueOf(value)).replaceAll("\\s+", " ");
+        return text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH - 3).concat("...") : text;
+    }
+}
@@ -0,0 +1,165 @@
+package org.example.util;
+
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.AbstractWebDriverEventListener;
+import org.openqa.selenium.support.events.EventFiringWebDriver;
+
+
+/**
+ * Records the commands fired by an {@link EventFiringWebDriver} into a {@link CommandTrace}. Only references are stored per command, so
+ * the overhead for passing tests stays minimal
+ *
+ * @author l.milov
+ */
+public class CommandTraceListener extends AbstractWebDriverEventListener
+{
+
+    private static final String OK = "OK";
+
+    private final CommandTrace trace;
+
+    public CommandTraceListener(final CommandTrace trace)
+    {
+        this.trace = Objects.requireNonNull(trace, "Parameter [trace] cannot be null");
+    }
+
+
+    @Override
+    public void beforeNavigateTo(final String url, final WebDriver driver)
+    {
+        trace.begin("navigateTo", url);
+    }
+
+
+    @Override
+    public void afterNavigateTo(final String url, final WebDriver driver)
+    {
+        trace.end(OK);
+    }
+
+
+    @Override
+    public void beforeNavigateRefresh(final WebDriver driver)
+    {
+        trace.begin("refresh", null);
+    }
+
+
+    @Override
+    public void afterNavigateRefresh(final WebDriver driver)
+    {
+        trace.end(OK);
+    }
+
+
+    @Override
+    public void beforeFindBy(final By by, final WebElement element, final WebDriver driver)
+    {
+        trace.begin(element == null ? "findElement" : "findElement (child)", by);
+    }
+
+
+    @Override
+    public void afterFindBy(final By by, final WebElement element, final WebDriver driver)
+    {
+        trace.end(OK);
+    }
+
+
+    @Override
+    public void beforeClickOn(final WebElement element, final WebDriver driver)
+    {
+        trace.begin("click", element);
+    }
+
+
+    @Override
+    public void afterClickOn(final WebElement element, final WebDriver driver)
+    {
+        trace.end(OK);
+    }
+
+
+    @Override
+    public void beforeChangeValueOf(final WebElement element, final WebDriver driver, final CharSequence[] keysToSend)
+    {
+        trace.begin(keysToSend == null ? "clear" : "sendKeys", element);
+    }
+
+
+    @Override
+    public void afterChangeValueOf(final WebElement element, final WebDriver driver, final CharSequence[] keysToSend)
+    {
+        trace.end(keysToSend == null ? OK : Arrays.toString(keysToSend));
+    }
+
+
+    @Override
+    public void beforeScript(final String script, final WebDriver driver)
+    {
+        trace.begin("executeScript", script);
+    }
+
+
+    @Override
+    public void afterScript(final String script, final WebDriver driver)
+    {
+        trace.end(OK);
+    }
+
+
+    @Override
+    public void beforeSwitchToWindow(final String windowName, final WebDriver driver)
+    {
+        trace.begin("switchToWindow", windowName);
+    }
+
+
+    @Override
+    public void afterSwitchToWindow(final String windowName, final WebDriver driver)
+    {
+        trace.end(OK);
+    }
+
+
+    @Override
+    public void beforeGetText(final WebElement element, final WebDriver driver)
+    {
+        trace.begin("getText", element);
+    }
+
+
+    @Override
+    public void afterGetText(final WebElement element, final WebDriver driver, final String text)
+    {
+        trace.end(text);
+    }
+
+
+    @Override
+    public <X> void beforeGetScreenshotAs(final OutputType<X> target)
+    {
+        trace.begin("getScreenshotAs", target);
+    }
+
+
+    @Override
+    public <X> void afterGetScreenshotAs(final OutputType<X> target, final X screenshot)
+    {
+        trace.end(OK);
+    }
+
+
+    @Override
+    public void onException(final Throwable throwable, final WebDriver driver)
+    {
+        trace.end(throwable);
+    }
+}
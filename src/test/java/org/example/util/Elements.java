@@ -92,7 +92,7 @@ public class Elements
         Objects.requireNonNull(driver, "Parameter [driver] cannot be null");
         boolean result = false;
 
-        final List<WebElement> allElements = driver.findElements(by);
+        final List<WebElement> allElements = LocatorProfiler.findElements("Elements.isVisible", driver, by);
         if (!allElements.isEmpty())
         {
             result = true;
@@ -122,6 +122,23 @@ public class Elements
      * @param doClearField {@code true} if any previous text that may have been in the field should be cleared, {@code false} otherwise
      */
     public static void fillField(final WebElement fieldElement, final String fieldValue, final boolean doClearField)
+    {
+        Objects.requireNonNull(fieldElement, "Parameter [fieldElement] cannot be null");
+        Objects.requireNonNull(fieldValue, "Parameter [fieldValue] cannot be null");
+        typeInField(fieldElement, fieldValue, doClearField);
+        Toolbox.sleep(1);
+    }
+
+
+    /**
+     * Enters a given value in a given text field without waiting for the page to react, for callers which wait for the result on their
+     * own (e.g. by submitting the value)
+     *
+     * @param fieldElement the text field element
+     * @param fieldValue the value to be entered
+     * @param doClearField {@code true} if any previous text that may have been in the field should be cleared, {@code false} otherwise
+     */
+    public static void typeInField(final WebElement fieldElement, final String fieldValue, final boolean doClearField)
     {
         Objects.requireNonNull(fieldElement, "Parameter [fieldElement] cannot be null");
         Objects.requireNonNull(fieldValue, "Parameter [fieldValue] cannot be null");
@@ -130,7 +147,6 @@ public class Elements
             clearField(fieldElement);
         }
         fieldElement.sendKeys(fieldValue);
-        Toolbox.sleep(1);
     }
 
 
@@ -171,6 +187,28 @@ public class Elements
         ((JavascriptExecutor)driver).executeScript("arguments[0].scrollIntoView(true);", element);
     }
 
+
+    /**
+     * Sets the value of the AngularJS model bound to an element ({@code data-ng-model}) with a single script, the same way a selection in
+     * its menu would - the view value is set and a digest is run, so that the watchers of the page are notified
+     *
+     * @param element the element holding the {@code data-ng-model} attribute
+     * @param value the new value of the model
+     * @param driver a {@link WebDriver} instance
+     * @return the value of the model after it was set, as text. {@code null} if the element is not bound to a model
+     */
+    public static String setAngularModel(final WebElement element, final String value, final WebDriver driver)
+    {
+        Objects.requireNonNull(element, "Parameter [element] cannot be null");
+        Objects.requireNonNull(driver, "Parameter [driver] cannot be null");
+        final Object result = ((JavascriptExecutor)driver).executeScript(
+            "var element = angular.element(arguments[0]), value = arguments[1], model = element.controller('ngModel'); "
+            + "if (!model) { return null; } "
+            + "element.scope().$apply(function() { model.$setViewValue(value); }); "
+            + "return model.$modelValue == null ? null : String(model.$modelValue);", element, value);
+        return result == null ? null : result.toString();
+    }
+
     /**
      * Holds generic methods to access table rows/columns. Should be accessed by {@link this#tables} property
      *
@@ -186,7 +224,10 @@ public class Elements
          */
         public List<String> getTableHeaders(final WebElement tableElement)
         {
-            return tableElement.findElements(By.xpath("./thead/tr/th")).stream().map(WebElement::getText).collect(Collectors.toList());
+            return LocatorProfiler.findElements("Elements.tables.getTableHeaders", tableElement, By.xpath("./thead/tr/th"))
+                                  .stream()
+                                  .map(WebElement::getText)
+                                  .collect(Collectors.toList());
         }
 
 
@@ -198,7 +239,7 @@ public class Elements
          */
         public List<WebElement> getTableRows(final WebElement tableElement)
         {
-            return tableElement.findElements(By.xpath("./tbody/tr"));
+            return LocatorProfiler.findElements("Elements.tables.getTableRows", tableElement, By.xpath("./tbody/tr"));
         }
 
 
@@ -269,7 +310,7 @@ public class Elements
          */
         public List<WebElement> getCellsForRow(final WebElement row)
         {
-            return row.findElements(By.xpath("./td"));
+            return LocatorProfiler.findElements("Elements.tables.getCellsForRow", row, By.xpath("./td"));
         }
     }
 }
@@ -0,0 +1,103 @@
+package org.example.util;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.example.misc.GenericTestError;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+
+/**
+ * An immutable snapshot of the texts in the 'Exchange rate' table. The whole table is read with a single script, instead of a lookup per
+ * row and cell
+ *
+ * @author l.milov
+ */
+public class ExchangeRateTable
+{
+
+    private static final String EXTRACT_SCRIPT =
+        "var text = function(element) { return element.innerText.trim(); }; var table = arguments[0]; "
+        + "return [Array.prototype.map.call(table.querySelectorAll(':scope > thead > tr > th'), text), "
+        + "Array.prototype.map.call(table.querySelectorAll(':scope > tbody > tr'), "
+        + "function(row) { return Array.prototype.map.call(row.querySelectorAll(':scope > td'), text); })];";
+
+    private final List<String> headers;
+    private final List<List<String>> rows;
+
+    private ExchangeRateTable(final List<String> headers, final List<List<String>> rows)
+    {
+        this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+        final List<List<String>> rowsCopy = new ArrayList<>();
+        rows.forEach(row -> rowsCopy.add(Collections.unmodifiableList(new ArrayList<>(row))));
+        this.rows = Collections.unmodifiableList(rowsCopy);
+    }
+
+
+    /**
+     * Reads the current content of a table
+     *
+     * @param driver a {@link WebDriver} instance
+     * @param tableElement the table element
+     * @return the snapshot of the table
+     */
+    @SuppressWarnings("unchecked")
+    public static ExchangeRateTable extract(final WebDriver driver, final WebElement tableElement)
+    {
+        Objects.requireNonNull(driver, "Parameter [driver] cannot be null");
+        final List<Object> result = (List<Object>)((JavascriptExecutor)driver).executeScript(EXTRACT_SCRIPT, tableElement);
+        return new ExchangeRateTable((List<String>)result.get(0), (List<List<String>>)result.get(1));
+    }
+
+
+    /**
+     * @return the column titles
+     */
+    public List<String> getHeaders()
+    {
+        return headers;
+    }
+
+
+    /**
+     * @return the texts of the cells, row by row
+     */
+    public List<List<String>> getRows()
+    {
+        return rows;
+    }
+
+
+    /**
+     * @param rowNumber the number of the row (starting from 0)
+     * @param columnNumber the number of the column (starting from 0)
+     * @return the text of the cell
+     */
+    public String getCell(final int rowNumber, final int columnNumber)
+    {
+        return rows.get(rowNumber).get(columnNumber);
+    }
+
+
+    /**
+     * Gets the number of a column based on its title
+     *
+     * @param columnTitle the value of the column header
+     * @return the number of the column
+     * @throws GenericTestError if no column matching the title is found
+     */
+    public int getColumnNumber(final String columnTitle)
+    {
+        final int columnNumber = headers.indexOf(columnTitle);
+        if (columnNumber < 0)
+        {
+            throw new GenericTestError(String.format("Column with title [%s] does not exist", columnTitle));
+        }
+        return columnNumber;
+    }
+}
@@ -0,0 +1,175 @@
+package org.example.util;
+
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.runner.Description;
+
+
+/**
+ * Records which source files of the framework (page objects, {@link Elements}, {@link org.example.misc.ScreenType}, etc...) each test
+ * method actually uses. Enabled with the {@code impact.recording} system property; the calls are reported by {@link ImpactRecorderAspect}.
+ * At the end of the run the recorded entries replace the previous ones of the same tests in the impact map ({@code impact.map.file}, by
+ * default {@code test-impact.tsv}), which is then used by {@link TestImpactSelector}
+ *
+ * @author l.milov
+ */
+public class ImpactRecorder
+{
+
+    private static final boolean ENABLED = Boolean.getBoolean("impact.recording");
+    static final Path MAP_FILE = Paths.get(System.getProperty("impact.map.file", "test-impact.tsv"));
+    static final String SOURCE_ROOT = "src/test/java/";
+    /** The suffix of the classes generated by the page object processor, which belong to the source file of their page object */
+    private static final String GENERATED_SUFFIX = "Locators";
+
+    private static final ThreadLocal<Set<String>> currentTest = new ThreadLocal<>();
+    private static final Map<String, Set<String>> recorded = new ConcurrentHashMap<>();
+
+    static
+    {
+        if (ENABLED)
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread(ImpactRecorder::writeMap, "impact-recorder"));
+        }
+    }
+
+    private ImpactRecorder()
+    {
+    }
+
+
+    /**
+     * @return {@code true} if the used sources are being recorded, {@code false} otherwise
+     */
+    public static boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+
+    /**
+     * Starts recording for a test on the current thread
+     *
+     * @param description the description of the test
+     */
+    public static void start(final Description description)
+    {
+        if (ENABLED)
+        {
+            // The rows of a parameterized test (and the browsers of the matrix) share the ID, so the sources used by all of them are kept
+            final Set<String> sources = recorded.computeIfAbsent(getTestId(description), test -> ConcurrentHashMap.newKeySet());
+            sources.add(toSourcePath(description.getClassName()));
+            currentTest.set(sources);
+        }
+    }
+
+
+    /**
+     * Stops recording on the current thread
+     */
+    public static void stop()
+    {
+        currentTest.remove();
+    }
+
+
+    /**
+     * Records the use of a class by the test running on the current thread
+     *
+     * @param type the used class
+     */
+    static void record(final Class<?> type)
+    {
+        final Set<String> sources = currentTest.get();
+        if (sources != null)
+        {
+            sources.add(toSourcePath(type.getName()));
+        }
+    }
+
+
+    /**
+     * @return the ID of a test in the impact map and in the {@code -Dtest} filter, e.g. 'org.example.tests.InvalidInputCheckerTest#testInvalidInput'
+     */
+    static String getTestId(final Description description)
+    {
+        // Parameterized tests have their parameters in brackets after the method name
+        return description.getClassName() + "#" + StringUtils.substringBefore(description.getMethodName(), "[");
+    }
+
+
+    /**
+     * @return the path of the source file of a class, relative to the project
+     */
+    static String toSourcePath(final String className)
+    {
+        String outerClass = StringUtils.substringBefore(className, "$");
+        if (outerClass.endsWith(GENERATED_SUFFIX))
+        {
+            outerClass = StringUtils.removeEnd(outerClass, GENERATED_SUFFIX);
+        }
+        return SOURCE_ROOT + outerClass.replace('.', '/') + ".java";
+    }
+
+
+    /**
+     * Reads the impact map
+     *
+     * @return the used sources per test
+     */
+    static Map<String, Set<String>> readMap()
+    {
+        final Map<String, Set<String>> map = new TreeMap<>();
+        if (!Files.exists(MAP_FILE))
+        {
+            return map;
+        }
+        try
+        {
+            for (final String line : Files.readAllLines(MAP_FILE, StandardCharsets.UTF_8))
+            {
+                final String[] values = StringUtils.split(line, '\t');
+                if (values.length == 2)
+                {
+                    map.computeIfAbsent(values[0], test -> new TreeSet<>()).add(values[1]);
+                }
+            }
+            return map;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("Could not read the impact map", e);
+        }
+    }
+
+
+    private static void writeMap()
+    {
+        final Map<String, Set<String>> map = readMap();
+        recorded.forEach((test, sources) -> map.put(test, new TreeSet<>(sources)));
+        final List<String> lines = new ArrayList<>();
+        map.forEach((test, sources) -> sources.forEach(source -> lines.add(test + "\t" + source)));
+        try
+        {
+            Files.write(MAP_FILE, lines, StandardCharsets.UTF_8);
+        }
+        catch (final IOException e)
+        {
+            System.err.println("Could not write the impact map: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.util;
+
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.annotation.Pointcut;
+
+
+/**
+ * Reports the framework code executed by a test to the {@link ImpactRecorder}: the page objects (including their generated locators), the
+ * {@link Elements} utilities and the {@link org.example.misc.ScreenType} entries. Woven at load time, see {@code META-INF/aop.xml}
+ *
+ * @author l.milov
+ */
+@Aspect
+public class ImpactRecorderAspect
+{
+
+    @Pointcut("if()")
+    public static boolean isRecording()
+    {
+        return ImpactRecorder.isEnabled();
+    }
+
+
+    @Pointcut("execution(* org.example.screens..*(..)) || execution(org.example.screens..new(..)) "
+              + "|| execution(* org.example.util.Elements..*(..)) || execution(* org.example.misc.ScreenType.*(..))")
+    public void frameworkCode()
+    {
+    }
+
+
+    @Before("isRecording() && frameworkCode()")
+    public void record(final JoinPoint.StaticPart joinPoint)
+    {
+        ImpactRecorder.record(joinPoint.getSignature().getDeclaringType());
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.util;
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+import org.example.misc.NetworkProfile;
+
+import io.qameta.allure.Allure;
+
+
+/**
+ * Records how long the calculator took to respond to an action (loading the table, filtering), together with the {@link NetworkProfile}
+ * applied by the {@link LocalProxy} at the time. Each measurement is added as a step of the current test and written to
+ * {@code latency-samples.csv} next to the Allure results, so that runs under the same profile can be compared
+ *
+ * @author l.milov
+ */
+public class LatencyLog
+{
+
+    private static final String HEADER = "timestamp,thread,network,action,millis";
+
+    private static BufferedWriter writer;
+
+    private LatencyLog()
+    {
+    }
+
+
+    /**
+     * Records a measurement
+     *
+     * @param action the measured action, e.g. 'table-load'
+     * @param millis the duration of the action
+     */
+    public static void record(final String action, final long millis)
+    {
+        final String network = getNetworkName();
+        Allure.step(String.format("'%s' took [%s] ms on the [%s] network", action, millis, network));
+        write(String.join(",", Instant.now().toString(), Thread.currentThread().getName(), network, action, Long.toString(millis)));
+    }
+
+
+    /**
+     * @return the name of the network profile applied to the browsers, 'UNSHAPED' if there is none
+     */
+    public static String getNetworkName()
+    {
+        final NetworkProfile profile = getNetworkProfile();
+        return profile == null ? "UNSHAPED" : profile.getName();
+    }
+
+
+    /**
+     * @return {@code true} if a network profile is applied to the browsers, {@code false} otherwise
+     */
+    public static boolean isNetworkShaped()
+    {
+        return getNetworkProfile() != null;
+    }
+
+
+    private static NetworkProfile getNetworkProfile()
+    {
+        return LocalProxy.isEnabled() ? LocalProxy.getInstance().getNetworkProfile() : null;
+    }
+
+
+    private static synchronized void write(final String line)
+    {
+        try
+        {
+            if (writer == null)
+            {
+                final Path file = AttachmentSink.getResultsDir().resolveSibling("latency-samples.csv");
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                final boolean isNew = !Files.exists(file);
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                if (isNew)
+                {
+                    writer.write(HEADER);
+                    writer.newLine();
+                }
+            }
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("Could not write the latency samples", e);
+        }
+    }
+}
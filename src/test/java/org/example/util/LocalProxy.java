@@ -0,0 +1,612 @@
+package org.example.util;
+
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.example.misc.NetworkProfile;
+import org.openqa.selenium.Proxy;
+
+import com.google.common.hash.Hashing;
+
+
+/**
+ * A minimal HTTP(S) proxy, embedded in the test JVM and used by the browsers when the {@code proxy.enabled} system property is set.
+ * Requests to hosts from the blocklist (analytics and other third party scripts the tests never check) are rejected. Static assets
+ * requested over plain HTTP are cached on disk, as long as their {@code Cache-Control}/{@code Expires} headers allow it. The responses keep
+ * the headers of the server, except the hop-by-hop ones. HTTPS traffic is tunneled as is (it cannot be cached without intercepting TLS), so
+ * for it the browsers are given persistent disk cache directories instead, see {@link this#leaseBrowserCacheDir(String)}. When a
+ * {@link NetworkProfile} is set ({@code network.profile} system property, which also enables the proxy), its latency, bandwidth and packet
+ * loss are applied to all traffic between the browsers and the servers. The bandwidth of each direction is shared by all connections (a
+ * browser opens several per host), as it would be on a real link. The proxy only sees the TCP streams, so a lost packet is emulated as the
+ * delay of its retransmission
+ *
+ * @author l.milov
+ */
+public class LocalProxy
+{
+
+    private static final List<String> DEFAULT_BLOCKLIST = Arrays.asList("google-analytics.com", "googletagmanager.com", "doubleclick.net",
+                                                                        "googleadservices.com", "facebook.net", "facebook.com",
+                                                                        "hotjar.com", "connect.facebook.net", "bat.bing.com",
+                                                                        "zopim.com", "zendesk.com", "intercom.io", "clarity.ms");
+    private static final List<String> CACHEABLE_EXTENSIONS = Arrays.asList(".css", ".js", ".png", ".jpg", ".jpeg", ".gif", ".svg", ".ico",
+                                                                           ".woff", ".woff2", ".ttf", ".eot", ".webp");
+    /** Headers (lower case) which are not forwarded to the server, nor back to the browser. The proxy sets its own framing headers */
+    private static final List<String> HOP_BY_HOP_HEADERS = Arrays.asList("proxy-connection", "connection", "keep-alive", "content-length",
+                                                                         "transfer-encoding", "te", "trailer", "upgrade",
+                                                                         "proxy-authenticate", "proxy-authorization");
+    /** Directives (lower case) of {@code Cache-Control} which forbid serving a response from the cache without asking the server */
+    private static final List<String> NOT_CACHEABLE_DIRECTIVES = Arrays.asList("no-store", "no-cache", "private");
+    private static final int BUFFER_SIZE = 16 * 1024;
+    /** The shaped traffic is sent in chunks of at most this many milliseconds of transmission, so that it flows evenly */
+    private static final long SHAPING_INTERVAL_IN_MILLIS = 20;
+    /** The minimum TCP retransmission timeout, the least a lost packet costs */
+    private static final long MIN_RETRANSMISSION_TIMEOUT_IN_MILLIS = 200;
+    /** The payload of a TCP packet on Ethernet, the unit in which the packet loss is applied */
+    private static final int PACKET_SIZE = 1460;
+
+    private static LocalProxy instance;
+
+    private final List<String> blocklist;
+    private final Path cacheDir;
+    /** The browser cache directories in use by a session, guarded by the set */
+    private final Set<String> leasedCacheDirs = new HashSet<>();
+    private final ServerSocket serverSocket;
+    private volatile NetworkProfile networkProfile = NetworkProfile.fromName(System.getProperty("network.profile"));
+    /** The shaped links towards the browsers and towards the servers, shared by all connections */
+    private final Link downlink = new Link();
+    private final Link uplink = new Link();
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable ->
+    {
+        final Thread thread = new Thread(runnable, "local-proxy-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private LocalProxy(final List<String> blocklist, final Path cacheDir) throws IOException
+    {
+        this.blocklist = blocklist;
+        this.cacheDir = cacheDir;
+        this.serverSocket = new ServerSocket(0, 100, InetAddress.getLoopbackAddress());
+        final Thread acceptor = new Thread(this::acceptConnections, "local-proxy");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+
+    /**
+     * @return {@code true} if the browsers should be started with the local proxy ({@code proxy.enabled} or {@code network.profile}
+     *         system property)
+     */
+    public static boolean isEnabled()
+    {
+        return Boolean.getBoolean("proxy.enabled") || System.getProperty("network.profile") != null;
+    }
+
+
+    /**
+     * Returns the proxy of the run, starting it on the first call. The blocklist is taken from the {@code proxy.blocklist} system property
+     * (comma separated hosts, subdomains are blocked too) and the cache directory from {@code proxy.cache.dir}
+     *
+     * @return the running proxy
+     */
+    public static synchronized LocalProxy getInstance()
+    {
+        if (instance == null)
+        {
+            final String blocklist = System.getProperty("proxy.blocklist");
+            try
+            {
+                instance = new LocalProxy(blocklist == null ? DEFAULT_BLOCKLIST : Arrays.stream(StringUtils.split(blocklist, ','))
+                                                                                        .map(String::trim)
+                                                                                        .collect(Collectors.toList()),
+                                          Paths.get(System.getProperty("proxy.cache.dir", "target/proxy-cache")));
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException("Could not start the local proxy", e);
+            }
+        }
+        return instance;
+    }
+
+
+    /**
+     * @return the proxy settings to be given to the browser options
+     */
+    public Proxy toSeleniumProxy()
+    {
+        final String address = "127.0.0.1:" + serverSocket.getLocalPort();
+        final Proxy proxy = new Proxy();
+        proxy.setHttpProxy(address);
+        proxy.setSslProxy(address);
+        return proxy;
+    }
+
+
+    /**
+     * Returns a directory which a browser session can use as its persistent disk cache, so that HTTPS assets are reused between sessions.
+     * A browser cannot share its cache with another one running at the same time, so each session gets a directory no other session is
+     * using, until it gives it back with {@link this#releaseBrowserCacheDir(String)}
+     *
+     * @param browserName the name of the browser, each browser gets its own directories
+     * @return the absolute path of the directory
+     */
+    public String leaseBrowserCacheDir(final String browserName)
+    {
+        synchronized (leasedCacheDirs)
+        {
+            for (int i = 0;; i++)
+            {
+                final String dir = cacheDir.resolve(String.format("browser-%s-%d", browserName.toLowerCase(Locale.ROOT), i))
+                                           .toAbsolutePath()
+                                           .toString();
+                if (leasedCacheDirs.add(dir))
+                {
+                    return dir;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Makes a directory returned by {@link this#leaseBrowserCacheDir(String)} available to the next session, once its browser has been
+     * quit
+     *
+     * @param dir the directory
+     */
+    public void releaseBrowserCacheDir(final String dir)
+    {
+        synchronized (leasedCacheDirs)
+        {
+            leasedCacheDirs.remove(dir);
+        }
+    }
+
+
+    /**
+     * @return the network conditions applied to the traffic, {@code null} if the traffic is not shaped
+     */
+    public NetworkProfile getNetworkProfile()
+    {
+        return networkProfile;
+    }
+
+
+    /**
+     * Changes the network conditions applied to the traffic. The change applies to all sessions using the proxy, from their next chunk of
+     * data on
+     *
+     * @param networkProfile the network conditions, {@code null} to stop shaping the traffic
+     */
+    public void setNetworkProfile(final NetworkProfile networkProfile)
+    {
+        this.networkProfile = networkProfile;
+    }
+
+
+    /**
+     * @param host a host name
+     * @return {@code true} if requests to the host are blocked, {@code false} otherwise
+     */
+    public boolean isBlocked(final String host)
+    {
+        return blocklist.stream().anyMatch(blocked -> StringUtils.equalsIgnoreCase(host, blocked)
+                                                      || StringUtils.endsWithIgnoreCase(host, "." + blocked));
+    }
+
+
+    private void acceptConnections()
+    {
+        while (!serverSocket.isClosed())
+        {
+            try
+            {
+                final Socket client = serverSocket.accept();
+                connections.execute(() -> handle(client));
+            }
+            catch (final IOException e)
+            {
+                // The server socket was closed or the connection was dropped, keep serving the rest
+            }
+        }
+    }
+
+
+    /**
+     * Handles a single client connection - either a CONNECT tunnel or a single plain HTTP request
+     */
+    private void handle(final Socket client)
+    {
+        try (Socket socket = client)
+        {
+            final InputStream in = new BufferedInputStream(socket.getInputStream());
+            final OutputStream out = socket.getOutputStream();
+            final String requestLine = readLine(in);
+            final Map<String, String> headers = readHeaders(in);
+            final String[] request = StringUtils.split(requestLine, ' ');
+            if (request == null || request.length < 3)
+            {
+                return;
+            }
+            if ("CONNECT".equalsIgnoreCase(request[0]))
+            {
+                tunnel(request[1], in, out);
+            }
+            else
+            {
+                forward(request[0], request[1], headers, in, out);
+            }
+        }
+        catch (final IOException e)
+        {
+            // The browser or the server closed the connection
+        }
+    }
+
+
+    /**
+     * Tunnels an HTTPS connection to the target host, unless the host is blocked
+     */
+    private void tunnel(final String target, final InputStream in, final OutputStream out) throws IOException
+    {
+        final String host = StringUtils.substringBeforeLast(target, ":");
+        if (isBlocked(host))
+        {
+            writeStatus(out, 403, "Blocked by the test proxy");
+            return;
+        }
+        try (Socket upstream = new Socket())
+        {
+            upstream.connect(new InetSocketAddress(host, Integer.parseInt(StringUtils.substringAfterLast(target, ":"))), 15_000);
+            out.write("HTTP/1.1 200 Connection established\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            final InputStream upstreamIn = upstream.getInputStream();
+            final OutputStream upstreamOut = upstream.getOutputStream();
+            connections.execute(() ->
+            {
+                try
+                {
+                    transfer(in, upstreamOut, false);
+                }
+                catch (final IOException e)
+                {
+                    // One of the sides closed the tunnel
+                }
+                finally
+                {
+                    closeQuietly(upstream);
+                }
+            });
+            transfer(upstreamIn, out, true);
+        }
+    }
+
+
+    /**
+     * Forwards a plain HTTP request, serving static assets from the disk cache while they are fresh. A cached response is stored as its
+     * body and its headers, preceded by the time until which it is fresh
+     */
+    private void forward(final String method, final String target, final Map<String, String> headers, final InputStream in,
+                         final OutputStream out) throws IOException
+    {
+        final URL url = new URL(target);
+        if (isBlocked(url.getHost()))
+        {
+            writeStatus(out, 403, "Blocked by the test proxy");
+            return;
+        }
+        final boolean isCacheable = "GET".equalsIgnoreCase(method)
+                                    && CACHEABLE_EXTENSIONS.stream().anyMatch(extension -> StringUtils.endsWithIgnoreCase(url.getPath(), extension));
+        final String cacheKey = Hashing.sha256().hashString(target, StandardCharsets.UTF_8).toString();
+        final Path cachedBody = cacheDir.resolve(cacheKey + ".body");
+        final Path cachedHeaders = cacheDir.resolve(cacheKey + ".headers");
+        if (isCacheable && !hasNoCacheDirective(headers.get("cache-control")) && Files.exists(cachedBody) && Files.exists(cachedHeaders))
+        {
+            final List<String> lines = Files.readAllLines(cachedHeaders, StandardCharsets.ISO_8859_1);
+            if (!lines.isEmpty() && StringUtils.isNumeric(lines.get(0)) && Long.parseLong(lines.get(0)) > System.currentTimeMillis())
+            {
+                writeResponse(out, 200, "OK", lines.subList(1, lines.size()), Files.readAllBytes(cachedBody));
+                return;
+            }
+        }
+        // The request itself is not shaped, only the way to the server is delayed
+        final NetworkProfile profile = networkProfile;
+        if (profile != null)
+        {
+            sleep(TimeUnit.MILLISECONDS.toNanos(profile.getLatencyInMillis() / 2));
+        }
+
+        final HttpURLConnection connection = (HttpURLConnection)url.openConnection(java.net.Proxy.NO_PROXY);
+        connection.setRequestMethod(method);
+        connection.setInstanceFollowRedirects(false);
+        headers.forEach((name, value) ->
+        {
+            if (!HOP_BY_HOP_HEADERS.contains(name))
+            {
+                connection.setRequestProperty(name, value);
+            }
+        });
+        final int contentLength = Integer.parseInt(headers.getOrDefault("content-length", "0"));
+        if (contentLength > 0)
+        {
+            connection.setDoOutput(true);
+            final byte[] requestBody = new byte[contentLength];
+            int read = 0;
+            while (read < contentLength)
+            {
+                final int count = in.read(requestBody, read, contentLength - read);
+                if (count < 0)
+                {
+                    break;
+                }
+                read += count;
+            }
+            connection.getOutputStream().write(requestBody, 0, read);
+        }
+        final int status = connection.getResponseCode();
+        final InputStream responseStream = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (responseStream != null)
+        {
+            try (InputStream stream = responseStream)
+            {
+                transfer(stream, body);
+            }
+        }
+        // Read by index, which keeps the order of repeated headers (e.g. Set-Cookie). The status line is listed without a name
+        final List<String> responseHeaders = new ArrayList<>();
+        for (int i = 0; connection.getHeaderField(i) != null; i++)
+        {
+            final String name = connection.getHeaderFieldKey(i);
+            if (name != null && !HOP_BY_HOP_HEADERS.contains(name.toLowerCase(Locale.ROOT)))
+            {
+                responseHeaders.add(name + ": " + connection.getHeaderField(i));
+            }
+        }
+        final long freshUntil = getFreshUntil(connection);
+        if (isCacheable && status == 200 && freshUntil > System.currentTimeMillis() && connection.getHeaderField("Set-Cookie") == null)
+        {
+            Files.createDirectories(cacheDir);
+            Files.write(cachedBody, body.toByteArray());
+            final List<String> lines = new ArrayList<>();
+            lines.add(String.valueOf(freshUntil));
+            lines.addAll(responseHeaders);
+            Files.write(cachedHeaders, lines, StandardCharsets.ISO_8859_1);
+        }
+        writeResponse(out, status, StringUtils.defaultIfEmpty(connection.getResponseMessage(), "Proxy"), responseHeaders, body.toByteArray());
+    }
+
+
+    /**
+     * @return the time (in milliseconds since the epoch) until which a response may be served from the cache, taken from its
+     *         {@code Cache-Control: max-age} or {@code Expires} header. {@code 0} if it may not be cached
+     */
+    private static long getFreshUntil(final HttpURLConnection connection)
+    {
+        final String cacheControl = connection.getHeaderField("Cache-Control");
+        if (hasNoCacheDirective(cacheControl) || StringUtils.equals(connection.getHeaderField("Vary"), "*"))
+        {
+            return 0;
+        }
+        for (final String directive : StringUtils.split(StringUtils.defaultString(cacheControl), ','))
+        {
+            final String maxAge = StringUtils.substringAfter(directive.trim().toLowerCase(Locale.ROOT), "max-age=");
+            if (StringUtils.isNumeric(maxAge) && !maxAge.isEmpty())
+            {
+                return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Long.parseLong(maxAge));
+            }
+        }
+        return connection.getExpiration();
+    }
+
+
+    private static boolean hasNoCacheDirective(final String cacheControl)
+    {
+        return Arrays.stream(StringUtils.split(StringUtils.defaultString(cacheControl).toLowerCase(Locale.ROOT), ','))
+                     .map(String::trim)
+                     .anyMatch(NOT_CACHEABLE_DIRECTIVES::contains);
+    }
+
+
+    /**
+     * Copies all bytes from one stream to the other, flushing after each chunk so that interactive traffic is not delayed
+     */
+    void transfer(final InputStream in, final OutputStream out) throws IOException
+    {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) >= 0)
+        {
+            out.write(buffer, 0, count);
+            out.flush();
+        }
+    }
+
+
+    /**
+     * Copies all bytes from one stream to the other like {@link this#transfer(InputStream, OutputStream)}, applying the current
+     * {@link NetworkProfile}. Each chunk is held back until the link of its direction would have transmitted it, after the chunks of all other
+     * connections queued before it. The first chunk and data which had to be waited for (e.g. the next response in a tunnel) are delayed by
+     * half of the latency, while data which was already buffered follows without further latency. The loss is applied to each packet of the
+     * chunk - the lost packets are sent again, taking up the link once more, and the chunk is delayed by a retransmission timeout
+     *
+     * @param isDownload {@code true} for the traffic towards the browser, {@code false} for the traffic towards the server
+     */
+    void transfer(final InputStream in, final OutputStream out, final boolean isDownload) throws IOException
+    {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final Link link = isDownload ? downlink : uplink;
+        boolean isFirstChunk = true;
+        while (true)
+        {
+            final NetworkProfile profile = networkProfile;
+            final long kbps = profile == null ? 0 : isDownload ? profile.getDownloadKbps() : profile.getUploadKbps();
+            final int chunkSize = profile == null ? BUFFER_SIZE
+                                                  : (int)Math.max(512, Math.min(BUFFER_SIZE, kbps * SHAPING_INTERVAL_IN_MILLIS / 8));
+            final long readStart = System.nanoTime();
+            final int count = in.read(buffer, 0, chunkSize);
+            if (count < 0)
+            {
+                return;
+            }
+            if (profile != null)
+            {
+                final long now = System.nanoTime();
+                final boolean wasWaitedFor = isFirstChunk || now - readStart > TimeUnit.MILLISECONDS.toNanos(1);
+                int lostPackets = 0;
+                for (int packet = 0; packet < (count + PACKET_SIZE - 1) / PACKET_SIZE; packet++)
+                {
+                    if (ThreadLocalRandom.current().nextDouble(100) < profile.getPacketLossPercent())
+                    {
+                        lostPackets++;
+                    }
+                }
+                final long transmittedBytes = count + (long)lostPackets * PACKET_SIZE;
+                long deliverAt = link.reserve(now, transmittedBytes * 8L * TimeUnit.MILLISECONDS.toNanos(1) / kbps)
+                                 + (wasWaitedFor ? TimeUnit.MILLISECONDS.toNanos(profile.getLatencyInMillis() / 2) : 0);
+                if (lostPackets > 0)
+                {
+                    // The lost packets of a chunk are retransmitted together, after a single timeout
+                    deliverAt += TimeUnit.MILLISECONDS.toNanos(Math.max(MIN_RETRANSMISSION_TIMEOUT_IN_MILLIS, profile.getLatencyInMillis()));
+                }
+                sleep(deliverAt - now);
+            }
+            out.write(buffer, 0, count);
+            out.flush();
+            isFirstChunk = false;
+        }
+    }
+
+
+    private void writeStatus(final OutputStream out, final int status, final String message) throws IOException
+    {
+        writeResponse(out, status, "Proxy", Collections.singletonList("Content-Type: text/plain"), message.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * @param headers the header lines ('Name: value') of the response, without the framing headers
+     */
+    private void writeResponse(final OutputStream out, final int status, final String reason, final List<String> headers, final byte[] body)
+        throws IOException
+    {
+        final StringBuilder head = new StringBuilder(String.format("HTTP/1.1 %d %s\r\n", status, reason));
+        headers.forEach(header -> head.append(header).append("\r\n"));
+        head.append(String.format("Content-Length: %d\r\nConnection: close\r\n\r\n", body.length));
+        final ByteArrayOutputStream response = new ByteArrayOutputStream(head.length() + body.length);
+        response.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        response.write(body);
+        transfer(new ByteArrayInputStream(response.toByteArray()), out, true);
+    }
+
+
+    private static void sleep(final long nanos) throws InterruptedIOException
+    {
+        if (nanos <= 0)
+        {
+            return;
+        }
+        try
+        {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while shaping the traffic");
+        }
+    }
+
+
+    private static String readLine(final InputStream in) throws IOException
+    {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n')
+        {
+            if (c != '\r')
+            {
+                line.write(c);
+            }
+        }
+        return new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+
+    private static Map<String, String> readHeaders(final InputStream in) throws IOException
+    {
+        final Map<String, String> headers = new LinkedHashMap<>();
+        String line;
+        while (!(line = readLine(in)).isEmpty())
+        {
+            headers.put(StringUtils.substringBefore(line, ":").trim().toLowerCase(Locale.ROOT), StringUtils.substringAfter(line, ":").trim());
+        }
+        return headers;
+    }
+
+
+    private static void closeQuietly(final Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (final IOException e)
+        {
+            // Already closed
+        }
+    }
+
+    /**
+     * A shaped link, transmitting one chunk at a time in the order of the reservations
+     */
+    private static class Link
+    {
+        private long freeAt = System.nanoTime();
+
+        /**
+         * @param now the time the chunk is ready to be sent
+         * @param transmissionNanos the time the link needs to transmit the chunk
+         * @return the time the chunk has been transmitted
+         */
+        synchronized long reserve(final long now, final long transmissionNanos)
+        {
+            freeAt = Math.max(now, freeAt) + transmissionNanos;
+            return freeAt;
+        }
+    }
+}
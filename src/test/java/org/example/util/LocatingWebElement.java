@@ -0,0 +1,257 @@
+package org.example.util;
+
+
+import java.util.AbstractList;
+import java.util.List;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsElement;
+import org.openqa.selenium.interactions.Coordinates;
+import org.openqa.selenium.interactions.Locatable;
+import org.openqa.selenium.support.pagefactory.AbstractAnnotations;
+import org.openqa.selenium.support.pagefactory.AjaxElementLocator;
+import org.openqa.selenium.support.pagefactory.ElementLocator;
+
+
+/**
+ * A {@link WebElement} which locates the real element through an {@link ElementLocator} on every call, the same way the proxies created
+ * by {@link org.openqa.selenium.support.PageFactory} do, but as a plain class. Instances are created by the {@code *Locators} classes,
+ * which are generated from the {@code @FindBy} fields of the page objects
+ *
+ * @author l.milov
+ */
+public class LocatingWebElement implements WebElement, WrapsElement, Locatable
+{
+
+    private final ElementLocator locator;
+    private final String name;
+
+    LocatingWebElement(final ElementLocator locator, final String name)
+    {
+        this.locator = locator;
+        this.name = name;
+    }
+
+
+    /**
+     * Creates an element which waits (at most the given timeout) for the underlying element to appear whenever it is used
+     *
+     * @param searchContext the context in which the element is searched (usually the driver)
+     * @param timeOutInSeconds the maximum time to wait for the element
+     * @param by the locator of the element
+     * @param isLookupCached {@code true} if the element should be located only once ({@code @CacheLookup}), {@code false} otherwise
+     * @param name a name for the element, used in error messages (e.g. 'Screen.field')
+     * @return the new element
+     */
+    public static WebElement create(final SearchContext searchContext, final int timeOutInSeconds, final By by, final boolean isLookupCached,
+                                    final String name)
+    {
+        return new LocatingWebElement(createLocator(searchContext, timeOutInSeconds, by, isLookupCached, name), name);
+    }
+
+
+    /**
+     * Creates a list of elements, which is located again whenever it is used
+     *
+     * @see this#create(SearchContext, int, By, boolean, String)
+     */
+    public static List<WebElement> createList(final SearchContext searchContext, final int timeOutInSeconds, final By by,
+                                              final boolean isLookupCached, final String name)
+    {
+        final ElementLocator locator = createLocator(searchContext, timeOutInSeconds, by, isLookupCached, name);
+        return new AbstractList<WebElement>()
+        {
+            @Override
+            public WebElement get(final int index)
+            {
+                return locator.findElements().get(index);
+            }
+
+
+            @Override
+            public int size()
+            {
+                return locator.findElements().size();
+            }
+
+
+            @Override
+            public String toString()
+            {
+                return name + " (" + by + ")";
+            }
+        };
+    }
+
+
+    /**
+     * Creates the locator of an element. When {@link LocatorProfiler} is enabled, every lookup the locator sends to the browser is measured
+     * (not the time it waits for the element)
+     */
+    private static ElementLocator createLocator(final SearchContext searchContext, final int timeOutInSeconds, final By by,
+                                                final boolean isLookupCached, final String name)
+    {
+        return new AjaxElementLocator(LocatorProfiler.profileContext(name, searchContext), timeOutInSeconds, new AbstractAnnotations()
+        {
+            @Override
+            public By buildBy()
+            {
+                return by;
+            }
+
+
+            @Override
+            public boolean isLookupCached()
+            {
+                return isLookupCached;
+            }
+        });
+    }
+
+
+    @Override
+    public WebElement getWrappedElement()
+    {
+        return locator.findElement();
+    }
+
+
+    @Override
+    public Coordinates getCoordinates()
+    {
+        return ((Locatable)getWrappedElement()).getCoordinates();
+    }
+
+
+    @Override
+    public void click()
+    {
+        getWrappedElement().click();
+    }
+
+
+    @Override
+    public void submit()
+    {
+        getWrappedElement().submit();
+    }
+
+
+    @Override
+    public void sendKeys(final CharSequence... keysToSend)
+    {
+        getWrappedElement().sendKeys(keysToSend);
+    }
+
+
+    @Override
+    public void clear()
+    {
+        getWrappedElement().clear();
+    }
+
+
+    @Override
+    public String getTagName()
+    {
+        return getWrappedElement().getTagName();
+    }
+
+
+    @Override
+    public String getAttribute(final String attributeName)
+    {
+        return getWrappedElement().getAttribute(attributeName);
+    }
+
+
+    @Override
+    public boolean isSelected()
+    {
+        return getWrappedElement().isSelected();
+    }
+
+
+    @Override
+    public boolean isEnabled()
+    {
+        return getWrappedElement().isEnabled();
+    }
+
+
+    @Override
+    public String getText()
+    {
+        return getWrappedElement().getText();
+    }
+
+
+    @Override
+    public List<WebElement> findElements(final By by)
+    {
+        return getWrappedElement().findElements(by);
+    }
+
+
+    @Override
+    public WebElement findElement(final By by)
+    {
+        return getWrappedElement().findElement(by);
+    }
+
+
+    @Override
+    public boolean isDisplayed()
+    {
+        return getWrappedElement().isDisplayed();
+    }
+
+
+    @Override
+    public Point getLocation()
+    {
+        return getWrappedElement().getLocation();
+    }
+
+
+    @Override
+    public Dimension getSize()
+    {
+        return getWrappedElement().getSize();
+    }
+
+
+    @Override
+    public Rectangle getRect()
+    {
+        return getWrappedElement().getRect();
+    }
+
+
+    @Override
+    public String getCssValue(final String propertyName)
+    {
+        return getWrappedElement().getCssValue(propertyName);
+    }
+
+
+    @Override
+    public <X> X getScreenshotAs(final OutputType<X> target) throws WebDriverException
+    {
+        return getWrappedElement().getScreenshotAs(target);
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,260 @@
+package org.example.util;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+
+
+/**
+ * Measures how long element lookups take, per {@code @FindBy} field and per {@link Elements} call. Enabled with the
+ * {@code locator.profiling} system property. Only the lookups sent to the browser are measured - the waits of a {@code @FindBy} field for
+ * its element are made of several of them. The measurements are merged into a profile file ({@code locator.profile.file}, by default
+ * {@code target/locator-profile.tsv}) at the end of the run, so they aggregate across runs, and the worst offenders are written to
+ * {@code locator-profile-report.txt} next to it
+ *
+ * @author l.milov
+ */
+public class LocatorProfiler
+{
+
+    private static final boolean ENABLED = Boolean.getBoolean("locator.profiling");
+    private static final Path PROFILE_FILE = Paths.get(System.getProperty("locator.profile.file", "target/locator-profile.tsv"));
+    private static final int REPORTED_LOCATORS = 15;
+
+    private static final Map<String, Stats> statistics = new ConcurrentHashMap<>();
+
+    static
+    {
+        if (ENABLED)
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread(LocatorProfiler::writeProfile, "locator-profiler"));
+        }
+    }
+
+    private LocatorProfiler()
+    {
+    }
+
+
+    /**
+     * @return {@code true} if lookups are being profiled, {@code false} otherwise
+     */
+    public static boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+
+    /**
+     * Finds all elements matching a locator in a given context, measuring the lookup if profiling is enabled
+     *
+     * @param caller the name of the calling method (e.g. 'Elements.isVisible')
+     * @param context the context in which elements are searched (a driver or a parent element)
+     * @param by the locator
+     * @return the found elements
+     */
+    public static List<WebElement> findElements(final String caller, final SearchContext context, final By by)
+    {
+        if (!ENABLED)
+        {
+            return context.findElements(by);
+        }
+        return profile(caller, by, () -> context.findElements(by));
+    }
+
+
+    /**
+     * @param name the name of the looked up element (e.g. 'Screen.field')
+     * @param context the context in which the element is searched (a driver or a parent element)
+     * @return the given context, measuring each lookup made through it if profiling is enabled
+     */
+    public static SearchContext profileContext(final String name, final SearchContext context)
+    {
+        if (!ENABLED)
+        {
+            return context;
+        }
+        return new SearchContext()
+        {
+            @Override
+            public WebElement findElement(final By by)
+            {
+                return profileElement(name, by, () -> context.findElement(by));
+            }
+
+
+            @Override
+            public List<WebElement> findElements(final By by)
+            {
+                return profile(name, by, () -> context.findElements(by));
+            }
+        };
+    }
+
+
+    /**
+     * Runs a lookup of a single element, measuring it if profiling is enabled. A failed lookup is recorded with no matches
+     *
+     * @param name the name of the looked up element (e.g. 'Screen.field')
+     * @param by the locator
+     * @param lookup the lookup itself
+     * @return the found element
+     */
+    public static WebElement profileElement(final String name, final By by, final Supplier<WebElement> lookup)
+    {
+        if (!ENABLED)
+        {
+            return lookup.get();
+        }
+        final long start = System.nanoTime();
+        boolean isFound = false;
+        try
+        {
+            final WebElement element = lookup.get();
+            isFound = true;
+            return element;
+        }
+        finally
+        {
+            record(name, by, System.nanoTime() - start, isFound ? 1 : 0);
+        }
+    }
+
+
+    /**
+     * Runs a lookup of several elements, measuring it if profiling is enabled
+     *
+     * @see this#profileElement(String, By, Supplier)
+     */
+    public static List<WebElement> profile(final String name, final By by, final Supplier<List<WebElement>> lookup)
+    {
+        if (!ENABLED)
+        {
+            return lookup.get();
+        }
+        final long start = System.nanoTime();
+        int matches = 0;
+        try
+        {
+            final List<WebElement> elements = lookup.get();
+            matches = elements.size();
+            return elements;
+        }
+        finally
+        {
+            record(name, by, System.nanoTime() - start, matches);
+        }
+    }
+
+
+    private static void record(final String name, final By by, final long nanos, final int matches)
+    {
+        statistics.computeIfAbsent(name + '\t' + by, key -> new Stats()).add(1, nanos, nanos, matches);
+    }
+
+
+    /**
+     * Merges the measurements of this run into the profile file and writes the report of the slowest locators
+     */
+    private static void writeProfile()
+    {
+        if (statistics.isEmpty())
+        {
+            return;
+        }
+        try
+        {
+            final Map<String, Stats> merged = new ConcurrentHashMap<>(statistics);
+            if (Files.exists(PROFILE_FILE))
+            {
+                for (final String line : Files.readAllLines(PROFILE_FILE, StandardCharsets.UTF_8))
+                {
+                    final String[] columns = line.split("\t");
+                    if (columns.length == 6)
+                    {
+                        merged.computeIfAbsent(columns[0] + '\t' + columns[1], key -> new Stats())
+                              .add(Long.parseLong(columns[2]), Long.parseLong(columns[3]), Long.parseLong(columns[4]), Long.parseLong(columns[5]));
+                    }
+                }
+            }
+            if (PROFILE_FILE.toAbsolutePath().getParent() != null)
+            {
+                Files.createDirectories(PROFILE_FILE.toAbsolutePath().getParent());
+            }
+            final List<String> lines = merged.entrySet()
+                                             .stream()
+                                             .map(entry -> entry.getKey() + '\t' + entry.getValue())
+                                             .sorted()
+                                             .collect(Collectors.toList());
+            Files.write(PROFILE_FILE, lines, StandardCharsets.UTF_8);
+
+            final List<String> report = new ArrayList<>();
+            report.add(String.format("%-60s | %-70s | %8s | %10s | %10s | %12s", "Element / caller", "Locator", "Lookups", "Mean (ms)",
+                                     "Max (ms)", "Mean matches"));
+            merged.entrySet()
+                  .stream()
+                  .sorted(Comparator.comparing((Map.Entry<String, Stats> entry) -> entry.getValue().getMeanNanos()).reversed())
+                  .limit(REPORTED_LOCATORS)
+                  .forEach(entry ->
+                  {
+                      final String[] key = entry.getKey().split("\t", 2);
+                      final Stats stats = entry.getValue();
+                      report.add(String.format("%-60s | %-70s | %8d | %10.1f | %10.1f | %12.1f", key[0], key[1], stats.lookups,
+                                               stats.getMeanNanos() / 1_000_000d, stats.maxNanos / 1_000_000d,
+                                               (double)stats.matches / stats.lookups));
+                  });
+            Files.write(PROFILE_FILE.resolveSibling("locator-profile-report.txt"), report, StandardCharsets.UTF_8);
+        }
+        catch (final IOException | RuntimeException e)
+        {
+            // Runs in a shutdown hook, where a thrown exception would be lost
+            System.err.println("Could not write the locator profile: " + e);
+        }
+    }
+
+    /**
+     * Aggregated measurements of a single locator
+     */
+    private static class Stats
+    {
+        private long lookups;
+        private long totalNanos;
+        private long maxNanos;
+        private long matches;
+
+        synchronized void add(final long lookups, final long totalNanos, final long maxNanos, final long matches)
+        {
+            this.lookups += lookups;
+            this.totalNanos += totalNanos;
+            this.maxNanos = Math.max(this.maxNanos, maxNanos);
+            this.matches += matches;
+        }
+
+
+        synchronized double getMeanNanos()
+        {
+            return lookups == 0 ? 0 : (double)totalNanos / lookups;
+        }
+
+
+        @Override
+        public synchronized String toString()
+        {
+            return lookups + "\t" + totalNanos + "\t" + maxNanos + "\t" + matches;
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package org.example.util;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * A lightweight hub, embedded in the test JVM, which spreads the browser sessions over remote WebDriver nodes (Selenium nodes or plain
+ * driver servers, e.g. {@code chromedriver --port=9515}). Used by {@link org.example.base.TestBase} when the {@code grid.nodes} system
+ * property is set, in the format {@code <node URL>*<capacity>,...} (e.g. {@code http://10.0.0.5:4444/wd/hub*4,http://localhost:9515*2}).
+ * <ul>
+ * <li>New session requests wait in a FIFO queue until a node has a free slot, so no thread can be starved by the others. A request which
+ * waits longer than {@code grid.queue.timeout.seconds} (300 by default) fails</li>
+ * <li>A session is created on the healthy node with the most free slots, and all its following commands are routed to that node</li>
+ * <li>The nodes are checked through their {@code /status} endpoint every 10 seconds, unhealthy nodes do not get new sessions</li>
+ * <li>Sessions without commands for {@code grid.session.idle.seconds} (300 by default) are deleted, so that a crashed client does not
+ * keep its slot for the rest of the run</li>
+ * </ul>
+ *
+ * @author l.milov
+ */
+public class SessionHub
+{
+
+    private static final String BASE_PATH = "/wd/hub";
+    private static final long QUEUE_TIMEOUT_IN_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("grid.queue.timeout.seconds", 300));
+    private static final long SESSION_IDLE_IN_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("grid.session.idle.seconds", 300));
+    private static final long HEALTH_CHECK_INTERVAL_IN_SECONDS = 10;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static SessionHub instance;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Node> nodes;
+    /** New session requests, in the order of their arrival */
+    private final Deque<Object> queue = new ArrayDeque<>();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final HttpServer server;
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        final Thread thread = new Thread(runnable, "session-hub-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SessionHub(final List<Node> nodes) throws IOException
+    {
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 100);
+        server.createContext(BASE_PATH, this::handle);
+        server.setExecutor(Executors.newCachedThreadPool(runnable ->
+        {
+            final Thread thread = new Thread(runnable, "session-hub");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        maintenance.scheduleWithFixedDelay(this::checkNodes, 0, HEALTH_CHECK_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+    }
+
+
+    /**
+     * @return {@code true} if the sessions should be created on remote nodes ({@code grid.nodes} system property), {@code false} otherwise
+     */
+    public static boolean isEnabled()
+    {
+        return StringUtils.isNotBlank(System.getProperty("grid.nodes"));
+    }
+
+
+    /**
+     * Returns the hub of the run, starting it on the first call with the nodes from the {@code grid.nodes} system property
+     *
+     * @return the running hub
+     */
+    public static synchronized SessionHub getInstance()
+    {
+        if (instance == null)
+        {
+            final List<Node> nodes = new ArrayList<>();
+            for (final String node : StringUtils.split(System.getProperty("grid.nodes", ""), ','))
+            {
+                final String url = StringUtils.substringBefore(node.trim(), "*");
+                final int capacity = node.contains("*") ? Integer.parseInt(StringUtils.substringAfter(node, "*").trim()) : 1;
+                nodes.add(new Node(StringUtils.removeEnd(url, "/"), capacity));
+            }
+            try
+            {
+                instance = new SessionHub(nodes);
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException("Could not start the session hub", e);
+            }
+        }
+        return instance;
+    }
+
+
+    /**
+     * @return the URL to be given to {@link org.openqa.selenium.remote.RemoteWebDriver}
+     */
+    public URL getUrl()
+    {
+        try
+        {
+            return new URL("http", "127.0.0.1", server.getAddress().getPort(), BASE_PATH);
+        }
+        catch (final MalformedURLException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * @return the total number of sessions the nodes can hold at the same time
+     */
+    public int getCapacity()
+    {
+        return nodes.stream().mapToInt(node -> node.capacity).sum();
+    }
+
+
+    /**
+     * @return a one line summary of the nodes (URL, used and total slots, health), e.g. for the report
+     */
+    public String describeNodes()
+    {
+        synchronized (queue)
+        {
+            return nodes.stream()
+                        .map(node -> String.format("%s [%d/%d%s]", node.url, node.used, node.capacity, node.isHealthy ? "" : ", unhealthy"))
+                        .collect(Collectors.joining(", "));
+        }
+    }
+
+
+    private void handle(final HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            final String path = StringUtils.removeStart(exchange.getRequestURI().getPath(), BASE_PATH);
+            final byte[] body = readAll(exchange.getRequestBody());
+            if ("POST".equals(exchange.getRequestMethod()) && "/session".equals(path))
+            {
+                createSession(exchange, body);
+                return;
+            }
+            final String sessionId = StringUtils.substringBetween(path + "/", "/session/", "/");
+            final Session session = sessionId == null ? null : sessions.get(sessionId);
+            if (session == null)
+            {
+                respond(exchange, 404, error("invalid session id", String.format("Session [%s] is not known to the hub", sessionId)));
+                return;
+            }
+            session.lastUsed = System.currentTimeMillis();
+            final Response response;
+            if ("DELETE".equals(exchange.getRequestMethod()) && path.equals("/session/" + sessionId))
+            {
+                // The client considers the session ended even if the node did not respond, so the slot is freed in any case
+                try
+                {
+                    response = forward(session.node, exchange.getRequestMethod(), path, body);
+                }
+                finally
+                {
+                    release(sessionId);
+                }
+            }
+            else
+            {
+                response = forward(session.node, exchange.getRequestMethod(), path, body);
+            }
+            respond(exchange, response.status, response.body);
+        }
+        catch (final IOException e)
+        {
+            respond(exchange, 500, error("unknown error", "The node did not respond: " + e.getMessage()));
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+
+    /**
+     * Waits for a free slot (in the order of arrival of the requests) and creates the session on the chosen node
+     */
+    private void createSession(final HttpExchange exchange, final byte[] body) throws IOException
+    {
+        final Optional<Node> acquired = acquire();
+        if (!acquired.isPresent())
+        {
+            respond(exchange, 500, error("session not created", "No node had a free slot within the queue timeout. Nodes: " + describeNodes()));
+            return;
+        }
+        final Node node = acquired.get();
+        final Response response;
+        try
+        {
+            response = forward(node, "POST", "/session", body);
+        }
+        catch (final IOException e)
+        {
+            markUnhealthy(node);
+            releaseSlot(node);
+            throw e;
+        }
+        final JsonNode json = response.body.length == 0 ? mapper.createObjectNode() : mapper.readTree(response.body);
+        // W3C responses hold the ID in 'value', the legacy (OSS) ones at the top level
+        final String sessionId = json.path("value").path("sessionId").asText(json.path("sessionId").asText(null));
+        if (response.status != 200 || sessionId == null)
+        {
+            releaseSlot(node);
+        }
+        else
+        {
+            sessions.put(sessionId, new Session(node));
+        }
+        respond(exchange, response.status, response.body);
+    }
+
+
+    private Optional<Node> acquire()
+    {
+        final Object ticket = new Object();
+        final long deadline = System.currentTimeMillis() + QUEUE_TIMEOUT_IN_MILLIS;
+        synchronized (queue)
+        {
+            queue.addLast(ticket);
+            try
+            {
+                while (true)
+                {
+                    if (queue.peekFirst() == ticket)
+                    {
+                        final Optional<Node> node = nodes.stream()
+                                                         .filter(candidate -> candidate.isHealthy && candidate.used < candidate.capacity)
+                                                         .max(Comparator.comparingInt(candidate -> candidate.capacity - candidate.used));
+                        if (node.isPresent())
+                        {
+                            node.get().used++;
+                            return node;
+                        }
+                    }
+                    final long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0)
+                    {
+                        return Optional.empty();
+                    }
+                    queue.wait(remaining);
+                }
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+            finally
+            {
+                queue.remove(ticket);
+                queue.notifyAll();
+            }
+        }
+    }
+
+
+    private void release(final String sessionId)
+    {
+        final Session session = sessions.remove(sessionId);
+        if (session != null)
+        {
+            releaseSlot(session.node);
+        }
+    }
+
+
+    private void releaseSlot(final Node node)
+    {
+        synchronized (queue)
+        {
+            node.used = Math.max(node.used - 1, 0);
+            queue.notifyAll();
+        }
+    }
+
+
+    private void markUnhealthy(final Node node)
+    {
+        synchronized (queue)
+        {
+            node.isHealthy = false;
+        }
+    }
+
+
+    /**
+     * Checks the health of all nodes and deletes the idle sessions
+     */
+    private void checkNodes()
+    {
+        for (final Node node : nodes)
+        {
+            boolean isHealthy;
+            try
+            {
+                final Response response = forward(node, "GET", "/status", null);
+                isHealthy = response.status == 200 && mapper.readTree(response.body).path("value").path("ready").asBoolean(true);
+            }
+            catch (final IOException e)
+            {
+                isHealthy = false;
+            }
+            synchronized (queue)
+            {
+                node.isHealthy = isHealthy;
+                queue.notifyAll();
+            }
+        }
+        final long now = System.currentTimeMillis();
+        sessions.forEach((sessionId, session) ->
+        {
+            if (now - session.lastUsed > SESSION_IDLE_IN_MILLIS)
+            {
+                try
+                {
+                    forward(session.node, "DELETE", "/session/" + sessionId, null);
+                }
+                catch (final IOException e)
+                {
+                    // The session (or the node) is already gone
+                }
+                release(sessionId);
+            }
+        });
+    }
+
+
+    private static Response forward(final Node node, final String method, final String path, final byte[] body) throws IOException
+    {
+        final HttpURLConnection connection = (HttpURLConnection)new URL(node.url + path).openConnection(java.net.Proxy.NO_PROXY);
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(10_000);
+        if (body != null && body.length > 0)
+        {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            try (OutputStream out = connection.getOutputStream())
+            {
+                out.write(body);
+            }
+        }
+        final int status = connection.getResponseCode();
+        final InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        final byte[] responseBody;
+        if (in == null)
+        {
+            responseBody = new byte[0];
+        }
+        else
+        {
+            try (InputStream stream = in)
+            {
+                responseBody = readAll(stream);
+            }
+        }
+        return new Response(status, responseBody);
+    }
+
+
+    private static void respond(final HttpExchange exchange, final int status, final byte[] body) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0)
+        {
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(body);
+            }
+        }
+    }
+
+
+    private byte[] error(final String error, final String message) throws IOException
+    {
+        final Map<String, Object> value = new LinkedHashMap<>();
+        value.put("error", error);
+        value.put("message", message);
+        value.put("stacktrace", "");
+        return mapper.writeValueAsBytes(Collections.singletonMap("value", value));
+    }
+
+
+    private static byte[] readAll(final InputStream in) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) >= 0)
+        {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+
+    /**
+     * A remote node. The mutable fields are guarded by the queue monitor
+     */
+    private static class Node
+    {
+        private final String url;
+        private final int capacity;
+        private int used;
+        private boolean isHealthy = true;
+
+        private Node(final String url, final int capacity)
+        {
+            this.url = url;
+            this.capacity = capacity;
+        }
+    }
+
+
+    private static class Session
+    {
+        private final Node node;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private Session(final Node node)
+        {
+            this.node = node;
+        }
+    }
+
+
+    private static class Response
+    {
+        private final int status;
+        private final byte[] body;
+
+        private Response(final int status, final byte[] body)
+        {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.util;
+
+
+import java.util.List;
+import java.util.Map;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.DeclarePrecedence;
+import org.aspectj.lang.annotation.Pointcut;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WrapsDriver;
+
+
+/**
+ * Measures the main thread work of the page during each {@code @Step} of the page objects, when the {@code step.performance} system
+ * property is set. Before the step, a {@code PerformanceObserver} is started in the page for long tasks, layout shifts and long animation
+ * frames (whose script attribution shows the time spent evaluating scripts, Chrome only). After the step, the collected entries are
+ * summarized and attached to the step. Each step has its own observer, so nested steps are measured separately. Steps which navigate to
+ * another page are not measured, as the observer is lost with the old page. Woven at load time, see {@code META-INF/aop.xml}
+ *
+ * @author l.milov
+ */
+@Aspect
+@DeclarePrecedence("io.qameta.allure.aspects.StepsAspects, org.example.util.StepPerformanceAspect, org.example.util.StepRetryAspect")
+public class StepPerformanceAspect
+{
+
+    private static final boolean ENABLED = Boolean.getBoolean("step.performance");
+
+    private static final String ARM_SCRIPT =
+        "if (!window.PerformanceObserver) { return null; } "
+        + "var types = (PerformanceObserver.supportedEntryTypes || []).filter(function(type) { "
+        + "  return ['longtask', 'layout-shift', 'long-animation-frame'].indexOf(type) >= 0; }); "
+        + "if (!types.length) { return null; } "
+        + "var state = window.__stepPerformance = window.__stepPerformance || {next: 0, collectors: {}}; "
+        + "var id = ++state.next, entries = []; "
+        + "var observer = new PerformanceObserver(function(list) { entries.push.apply(entries, list.getEntries()); }); "
+        + "types.forEach(function(type) { observer.observe({type: type}); }); "
+        + "state.collectors[id] = {observer: observer, entries: entries, types: types, start: performance.now()}; "
+        + "return id;";
+
+    private static final String COLLECT_SCRIPT =
+        "var state = window.__stepPerformance, id = arguments[0], collector = state && state.collectors[id]; "
+        + "if (!collector) { return null; } "
+        + "collector.entries.push.apply(collector.entries, collector.observer.takeRecords()); "
+        + "collector.observer.disconnect(); "
+        + "delete state.collectors[id]; "
+        + "var summary = {observed: collector.types.join(', '), durationMillis: Math.round(performance.now() - collector.start), "
+        + "  longTasks: 0, longTaskMillis: 0, blockingMillis: 0, longestTaskMillis: 0, layoutShift: 0, layoutShifts: 0, "
+        + "  longFrames: 0, scriptMillis: 0, scripts: []}; "
+        + "collector.entries.forEach(function(entry) { "
+        + "  if (entry.entryType === 'longtask') { "
+        + "    summary.longTasks++; summary.longTaskMillis += entry.duration; summary.blockingMillis += Math.max(0, entry.duration - 50); "
+        + "    summary.longestTaskMillis = Math.max(summary.longestTaskMillis, entry.duration); "
+        + "  } else if (entry.entryType === 'layout-shift') { "
+        + "    if (!entry.hadRecentInput) { summary.layoutShift += entry.value; summary.layoutShifts++; } "
+        + "  } else if (entry.entryType === 'long-animation-frame') { "
+        + "    summary.longFrames++; "
+        + "    (entry.scripts || []).forEach(function(script) { "
+        + "      summary.scriptMillis += script.duration; "
+        + "      summary.scripts.push({source: script.sourceURL || script.name, invoker: script.invoker || '', millis: Math.round(script.duration)}); "
+        + "    }); } }); "
+        + "summary.scripts.sort(function(a, b) { return b.millis - a.millis; }); "
+        + "summary.scripts = summary.scripts.slice(0, 5); "
+        + "['longTaskMillis', 'blockingMillis', 'longestTaskMillis', 'scriptMillis'].forEach(function(key) { summary[key] = Math.round(summary[key]); }); "
+        + "summary.layoutShift = Math.round(summary.layoutShift * 10000) / 10000; "
+        + "return summary;";
+
+    @Pointcut("if()")
+    public static boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+
+    @Around("isEnabled() && execution(@io.qameta.allure.Step * org.example.screens..*(..)) && this(screen)")
+    public Object measure(final ProceedingJoinPoint joinPoint, final WrapsDriver screen) throws Throwable
+    {
+        final WebDriver driver = screen.getWrappedDriver();
+        final Object collectorId = execute(driver, ARM_SCRIPT);
+        try
+        {
+            return joinPoint.proceed();
+        }
+        finally
+        {
+            if (collectorId != null)
+            {
+                final Object summary = execute(driver, COLLECT_SCRIPT, collectorId);
+                if (summary instanceof Map)
+                {
+                    AttachmentSink.attachText("Main thread work", format((Map<?, ?>)summary));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Runs a script without affecting the step - a session which cannot run it (e.g. it has no page loaded yet) is not measured
+     */
+    private static Object execute(final WebDriver driver, final String script, final Object... arguments)
+    {
+        try
+        {
+            return ((JavascriptExecutor)driver).executeScript(script, arguments);
+        }
+        catch (final WebDriverException e)
+        {
+            return null;
+        }
+    }
+
+
+    private static String format(final Map<?, ?> summary)
+    {
+        final StringBuilder text = new StringBuilder();
+        text.append(String.format("Step duration: %s ms (observed: %s)%n", summary.get("durationMillis"), summary.get("observed")));
+        text.append(String.format("Long tasks: %s, total %s ms, blocking %s ms, longest %s ms%n", summary.get("longTasks"),
+                                  summary.get("longTaskMillis"), summary.get("blockingMillis"), summary.get("longestTaskMillis")));
+        text.append(String.format("Layout shift: %s (%s shifts)%n", summary.get("layoutShift"), summary.get("layoutShifts")));
+        text.append(String.format("Script evaluation in long animation frames: %s ms (%s frames)%n", summary.get("scriptMillis"),
+                                  summary.get("longFrames")));
+        final List<?> scripts = (List<?>)summary.get("scripts");
+        if (scripts != null)
+        {
+            scripts.forEach(script ->
+            {
+                final Map<?, ?> scriptSummary = (Map<?, ?>)script;
+                text.append(String.format("    %s ms %s %s%n", scriptSummary.get("millis"), scriptSummary.get("source"), scriptSummary.get("invoker")));
+            });
+        }
+        return text.toString();
+    }
+}
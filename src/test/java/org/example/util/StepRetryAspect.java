@@ -0,0 +1,85 @@
+package org.example.util;
+
+
+import java.util.Arrays;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.DeclarePrecedence;
+import org.example.misc.RetryableStep;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.model.Status;
+import io.qameta.allure.model.StatusDetails;
+
+
+/**
+ * Retries the methods annotated with {@link RetryableStep} in the current session, instead of failing the whole test on a transient
+ * error (a stale element, a popup covering the element, etc...). Woven at load time by the AspectJ agent of the 'ui-tests' profile (see
+ * {@code META-INF/aop.xml}). It runs inside the Allure step of the method, so every failed attempt is recorded as a nested step and the
+ * step itself fails only when the last attempt fails. A test which passes after a retry is marked as flaky in the report
+ *
+ * @author l.milov
+ */
+@Aspect
+@DeclarePrecedence("io.qameta.allure.aspects.StepsAspects, org.example.util.StepRetryAspect")
+public class StepRetryAspect
+{
+
+    @Around("execution(@org.example.misc.RetryableStep * *(..)) && @annotation(retryableStep)")
+    public Object retry(final ProceedingJoinPoint joinPoint, final RetryableStep retryableStep) throws Throwable
+    {
+        final int attempts = Math.max(retryableStep.attempts(), 1);
+        for (int attempt = 1; ; attempt++)
+        {
+            try
+            {
+                final Object result = joinPoint.proceed();
+                if (attempt > 1)
+                {
+                    markFlaky();
+                }
+                return result;
+            }
+            catch (final Throwable e)
+            {
+                if (attempt >= attempts || !isRetryable(e, retryableStep))
+                {
+                    throw e;
+                }
+                Allure.step(String.format("Attempt %d of %d of [%s] failed with %s, retrying", attempt, attempts,
+                                          joinPoint.getSignature().toShortString(), e.getClass().getSimpleName()), Status.BROKEN);
+                try
+                {
+                    Thread.sleep(retryableStep.delayMillis());
+                }
+                catch (final InterruptedException interrupted)
+                {
+                    // Interrupted by the watchdog, do not retry
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+
+    private static boolean isRetryable(final Throwable e, final RetryableStep retryableStep)
+    {
+        return Arrays.stream(retryableStep.retryOn()).anyMatch(type -> type.isInstance(e));
+    }
+
+
+    private static void markFlaky()
+    {
+        Allure.getLifecycle().updateTestCase(result ->
+        {
+            if (result.getStatusDetails() == null)
+            {
+                result.setStatusDetails(new StatusDetails());
+            }
+            result.getStatusDetails().setFlaky(true);
+        });
+    }
+}
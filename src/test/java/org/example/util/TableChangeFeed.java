@@ -0,0 +1,237 @@
+package org.example.util;
+
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.example.misc.GenericTestError;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+
+/**
+ * A feed of the changes to a table and of the popups shown around it, recorded in the page by a {@code MutationObserver}. Instead of
+ * polling the page and reading the whole table again, a test drains the changes recorded since the last call - the cells whose text
+ * changed, changes of the rows, and elements shown outside the table (popups, notifications). An element counts as shown when it is added
+ * visible, or when a change of its {@code class}/{@code style} makes it visible (e.g. {@code ng-show}/{@code ng-hide}), so a popup which is
+ * hidden and shown again is reported each time. The observer lives in the page, so the feed has to be attached again after a navigation
+ *
+ * @author l.milov
+ */
+public class TableChangeFeed
+{
+
+    private static final String ATTACH_SCRIPT =
+        "var table = arguments[0], feed = window.__tableChangeFeed; "
+        + "if (feed && feed.table === table) { return; } "
+        + "if (feed) { feed.observer.disconnect(); } "
+        + "feed = {table: table, buffer: [], waiters: [], lastChange: 0, visibility: new WeakMap()}; "
+        + "var push = function(change) { change.time = Math.round(performance.now()); feed.buffer.push(change); feed.lastChange = change.time; "
+        + "  feed.waiters.slice().forEach(function(waiter) { waiter(); }); }; "
+        + "var isVisible = function(element) { "
+        + "  return element.getClientRects().length > 0 && window.getComputedStyle(element).visibility !== 'hidden'; }; "
+        + "var report = function(element, wasHidden) { "
+        + "  if (element.nodeType !== 1 || element.contains(table)) { return; } "
+        + "  var visible = isVisible(element), known = feed.visibility.has(element); "
+        + "  var shown = visible && (known ? !feed.visibility.get(element) : wasHidden); "
+        + "  feed.visibility.set(element, visible); "
+        + "  var text = shown ? (element.innerText || '').trim() : ''; "
+        + "  if (text) { push({type: 'POPUP', row: -1, column: -1, text: text.substring(0, 500)}); } }; "
+        + "feed.observer = new MutationObserver(function(records) { "
+        + "  var cells = [], rowsChanged = false; "
+        + "  records.forEach(function(record) { "
+        + "    var node = record.target.nodeType === 1 ? record.target : record.target.parentElement; "
+        + "    if (node && table.contains(node)) { "
+        + "      if (record.type === 'attributes') { return; } "
+        + "      var cell = node.closest('td, th'); "
+        + "      if (cell) { if (cells.indexOf(cell) < 0) { cells.push(cell); } } else if (record.type === 'childList') { rowsChanged = true; } "
+        + "      return; } "
+        + "    if (record.type === 'attributes') { "
+        + "      report(record.target, /\\bng-hide\\b|display:\\s*none|visibility:\\s*hidden/.test(record.oldValue || '')); "
+        + "      return; } "
+        + "    Array.prototype.forEach.call(record.addedNodes || [], function(added) { report(added, true); }); }); "
+        + "  if (rowsChanged) { push({type: 'ROWS', row: -1, column: -1, text: String(table.tBodies.length ? table.tBodies[0].rows.length : 0)}); } "
+        + "  cells.forEach(function(cell) { "
+        + "    push({type: 'CELL', row: cell.parentElement.sectionRowIndex, column: cell.cellIndex, text: cell.innerText.trim()}); }); }); "
+        + "feed.observer.observe(document.body, {childList: true, subtree: true, characterData: true, "
+        + "  attributes: true, attributeOldValue: true, attributeFilter: ['class', 'style']}); "
+        + "window.__tableChangeFeed = feed;";
+
+    private static final String DRAIN_SCRIPT =
+        "var feed = window.__tableChangeFeed; return feed ? feed.buffer.splice(0) : null;";
+
+    /** Calls back with the buffered changes once no new change came for the quiet period, or when the timeout has passed */
+    private static final String AWAIT_SCRIPT =
+        "var quiet = arguments[0], timeout = arguments[1], callback = arguments[arguments.length - 1], feed = window.__tableChangeFeed; "
+        + "if (!feed) { callback(null); return; } "
+        + "var start = performance.now(), timer = null, isDone = false; "
+        + "var check = function() { "
+        + "  if (isDone) { return; } "
+        + "  clearTimeout(timer); "
+        + "  var now = performance.now(), remaining = timeout - (now - start); "
+        + "  if ((feed.buffer.length && now - feed.lastChange >= quiet) || remaining <= 0) { "
+        + "    isDone = true; feed.waiters.splice(feed.waiters.indexOf(check), 1); callback(feed.buffer.splice(0)); return; } "
+        + "  timer = setTimeout(check, Math.max(0, Math.min(remaining, feed.buffer.length ? quiet - (now - feed.lastChange) : remaining))); }; "
+        + "feed.waiters.push(check); check();";
+
+    /** Kept well below the script timeout of the sessions, longer waits are split into several calls */
+    private static final long MAX_AWAIT_IN_MILLIS = 5000;
+
+    private final WebDriver driver;
+
+    private TableChangeFeed(final WebDriver driver)
+    {
+        this.driver = driver;
+    }
+
+
+    /**
+     * Starts recording the changes to a table. If the page already records the changes of the same table, it is left as is
+     *
+     * @param driver a {@link WebDriver} instance
+     * @param table the observed table element
+     * @return the feed of the table
+     */
+    public static TableChangeFeed attach(final WebDriver driver, final WebElement table)
+    {
+        Objects.requireNonNull(driver, "Parameter [driver] cannot be null");
+        Objects.requireNonNull(table, "Parameter [table] cannot be null");
+        ((JavascriptExecutor)driver).executeScript(ATTACH_SCRIPT, table);
+        return new TableChangeFeed(driver);
+    }
+
+
+    /**
+     * @return the changes recorded since the last call, in the order they happened. Empty if there were none
+     */
+    public List<Change> drain()
+    {
+        return toChanges(((JavascriptExecutor)driver).executeScript(DRAIN_SCRIPT));
+    }
+
+
+    /**
+     * Waits for the next changes and returns them together with the ones recorded before the call. The page usually updates in bursts
+     * (e.g. all rows after a filter), so the changes are returned once no new change came for the quiet period
+     *
+     * @param quietPeriod the time without changes after which a burst is considered complete
+     * @param timeout the maximum time to wait for the first change
+     * @return the changes, empty if there were none within the timeout
+     */
+    public List<Change> awaitChanges(final Duration quietPeriod, final Duration timeout)
+    {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        List<Change> changes;
+        do
+        {
+            final long remaining = Math.max(0, Duration.ofNanos(deadline - System.nanoTime()).toMillis());
+            changes = toChanges(((JavascriptExecutor)driver).executeAsyncScript(AWAIT_SCRIPT, quietPeriod.toMillis(),
+                                                                                 Math.min(remaining, MAX_AWAIT_IN_MILLIS)));
+        }
+        while (changes.isEmpty() && System.nanoTime() < deadline);
+        return changes;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static List<Change> toChanges(final Object result)
+    {
+        if (result == null)
+        {
+            throw new GenericTestError("The change feed is no longer attached, the page was probably reloaded");
+        }
+        final List<Change> changes = new ArrayList<>();
+        for (final Map<String, Object> change : (List<Map<String, Object>>)result)
+        {
+            changes.add(new Change(Change.Type.valueOf((String)change.get("type")), ((Number)change.get("row")).intValue(),
+                                   ((Number)change.get("column")).intValue(), (String)change.get("text"), ((Number)change.get("time")).longValue()));
+        }
+        return Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * A single recorded change
+     */
+    public static class Change
+    {
+        /**
+         * The kinds of recorded changes
+         */
+        public enum Type
+        {
+            /** The text of a cell changed */
+            CELL,
+            /** Rows were added or removed, the text holds the new number of rows */
+            ROWS,
+            /** An element with text was shown outside the table, e.g. a popup - added visible, or made visible by its class or style */
+            POPUP
+        }
+
+        private final Type type;
+        private final int row;
+        private final int column;
+        private final String text;
+        private final long timeInMillis;
+
+        Change(final Type type, final int row, final int column, final String text, final long timeInMillis)
+        {
+            this.type = type;
+            this.row = row;
+            this.column = column;
+            this.text = text;
+            this.timeInMillis = timeInMillis;
+        }
+
+
+        public Type getType()
+        {
+            return type;
+        }
+
+
+        /**
+         * @return the index of the row within its section (head or body) for {@link Type#CELL} changes, -1 otherwise
+         */
+        public int getRow()
+        {
+            return row;
+        }
+
+
+        /**
+         * @return the index of the column for {@link Type#CELL} changes, -1 otherwise
+         */
+        public int getColumn()
+        {
+            return column;
+        }
+
+
+        public String getText()
+        {
+            return text;
+        }
+
+
+        /**
+         * @return the time of the change, in milliseconds since the page was loaded
+         */
+        public long getTimeInMillis()
+        {
+            return timeInMillis;
+        }
+
+
+        @Override
+        public String toString()
+        {
+            return type == Type.CELL ? String.format("%s [%s, %s] at %s ms: %s", type, row, column, timeInMillis, text)
+                                     : String.format("%s at %s ms: %s", type, timeInMillis, text);
+        }
+    }
+}
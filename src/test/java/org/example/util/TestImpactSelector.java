@@ -0,0 +1,267 @@
+package org.example.util;
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Selects the tests affected by the changes against a git revision and prints them as a {@code -Dtest} filter (also written to
+ * {@code target/selected-tests.txt}). Two sources are combined:
+ * <ul>
+ * <li>the impact map recorded by {@link ImpactRecorder} - for changes in the page objects, {@link Elements} and
+ * {@link org.example.misc.ScreenType}, only the test methods which executed the changed file are selected</li>
+ * <li>a static scan of the test sources (imports and references between classes) - for all other changes, and for tests without
+ * recorded data, every test class which references the changed file (directly or through other classes) is selected</li>
+ * </ul>
+ * Changes to the build, the main sources or the test resources select all tests, changes to the visual baselines select the tests which use
+ * {@link VisualCheck}. Run with
+ * {@code mvn test-compile exec:java -P test-impact [-Dimpact.base=<revision>]}
+ *
+ * @author l.milov
+ */
+public class TestImpactSelector
+{
+
+    private static final Path OUTPUT_FILE = Paths.get("target/selected-tests.txt");
+    private static final Pattern PACKAGE = Pattern.compile("^package\\s+([\\w.]+);", Pattern.MULTILINE);
+    private static final Pattern REFERENCE = Pattern.compile("\\borg\\.example\\.[a-z][\\w.]*?\\.[A-Z]\\w*");
+    private static final Pattern WORD = Pattern.compile("\\b[A-Z]\\w*\\b");
+    /** The sources whose use is recorded per test method, see {@link ImpactRecorderAspect} */
+    private static final List<String> RECORDED_SOURCES = Arrays.asList(ImpactRecorder.SOURCE_ROOT + "org/example/screens/",
+                                                                     ImpactRecorder.SOURCE_ROOT + "org/example/util/Elements.java",
+                                                                     ImpactRecorder.SOURCE_ROOT + "org/example/misc/ScreenType.java");
+    private static final String VISUAL_CHECK_SOURCE = ImpactRecorder.SOURCE_ROOT + "org/example/util/VisualCheck.java";
+    /** Changes in these locations may affect any test */
+    private static final List<String> GLOBAL_SOURCES = Arrays.asList("pom.xml", "src/main/", "src/test/resources/");
+
+    private final Map<String, Set<String>> references = new TreeMap<>();
+    private final Set<String> testClasses = new TreeSet<>();
+
+    /**
+     * @param args optional: the git revision to compare with (default {@code origin/main})
+     */
+    public static void main(final String[] args) throws IOException
+    {
+        final List<String> changedFiles = getChangedFiles(args.length > 0 ? args[0] : "origin/main");
+        final TestImpactSelector selector = new TestImpactSelector();
+        selector.scanSources(Paths.get(ImpactRecorder.SOURCE_ROOT));
+        final String filter = selector.select(changedFiles, ImpactRecorder.readMap());
+        Files.createDirectories(OUTPUT_FILE.getParent());
+        Files.write(OUTPUT_FILE, Collections.singletonList(filter == null ? "ALL" : filter), StandardCharsets.UTF_8);
+        System.out.println(filter == null ? "All tests are affected" : filter.isEmpty() ? "No tests are affected" : "-Dtest=" + filter);
+    }
+
+
+    /**
+     * Selects the affected tests
+     *
+     * @param changedFiles the changed files, relative to the project
+     * @param impactMap the recorded sources per test method
+     * @return the {@code -Dtest} filter, an empty string if no test is affected, or {@code null} if all tests are affected
+     */
+    String select(final List<String> changedFiles, final Map<String, Set<String>> impactMap)
+    {
+        if (changedFiles.stream().anyMatch(file -> GLOBAL_SOURCES.stream().anyMatch(file::startsWith)))
+        {
+            return null;
+        }
+        // A changed visual baseline affects the tests which compare screenshots
+        final String baselinesDir = VisualCheck.BASELINES_DIR_NAME + "/";
+        final List<String> changedSources = changedFiles.stream()
+                                                        .map(file -> file.startsWith(baselinesDir) ? VISUAL_CHECK_SOURCE : file)
+                                                        .distinct()
+                                                        .collect(Collectors.toList());
+        final Map<String, Set<String>> selected = new TreeMap<>();
+        for (final String testClass : testClasses)
+        {
+            final String className = toClassName(testClass);
+            final Map<String, Set<String>> recordedMethods = impactMap.entrySet()
+                                                                      .stream()
+                                                                      .filter(entry -> entry.getKey().startsWith(className + "#"))
+                                                                      .collect(Collectors.toMap(entry -> StringUtils.substringAfter(entry.getKey(), "#"),
+                                                                                                Map.Entry::getValue));
+            final Set<String> closure = getClosure(testClass);
+            for (final String file : changedSources)
+            {
+                if (!closure.contains(file))
+                {
+                    continue;
+                }
+                final boolean isRecorded = RECORDED_SOURCES.stream().anyMatch(file::startsWith);
+                if (isRecorded && !recordedMethods.isEmpty() && !file.equals(testClass))
+                {
+                    recordedMethods.forEach((method, sources) ->
+                    {
+                        if (sources.contains(file))
+                        {
+                            selected.computeIfAbsent(className, name -> new TreeSet<>()).add(method);
+                        }
+                    });
+                }
+                else
+                {
+                    // The whole class, marked with an empty set of methods
+                    selected.put(className, new TreeSet<>());
+                    break;
+                }
+            }
+        }
+        return selected.entrySet()
+                       .stream()
+                       .map(entry -> StringUtils.substringAfterLast(entry.getKey(), ".")
+                                     + (entry.getValue().isEmpty() ? "" : "#" + String.join("+", entry.getValue())))
+                       .collect(Collectors.joining(","));
+    }
+
+
+    /**
+     * Reads all test sources and collects the references between them
+     */
+    void scanSources(final Path sourceRoot) throws IOException
+    {
+        final List<Path> files;
+        try (Stream<Path> walk = Files.walk(sourceRoot))
+        {
+            files = walk.filter(path -> path.toString().endsWith(".java")).collect(Collectors.toList());
+        }
+        final Map<String, Map<String, String>> classesByPackage = new TreeMap<>();
+        final Map<String, String> contents = new TreeMap<>();
+        for (final Path file : files)
+        {
+            final String path = toProjectPath(file);
+            final String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            contents.put(path, content);
+            final Matcher packageMatcher = PACKAGE.matcher(content);
+            final String packageName = packageMatcher.find() ? packageMatcher.group(1) : "";
+            classesByPackage.computeIfAbsent(packageName, name -> new TreeMap<>())
+                            .put(StringUtils.removeEnd(file.getFileName().toString(), ".java"), path);
+        }
+        contents.forEach((path, content) ->
+        {
+            final Set<String> fileReferences = new HashSet<>();
+            final Matcher referenceMatcher = REFERENCE.matcher(content);
+            while (referenceMatcher.find())
+            {
+                fileReferences.add(ImpactRecorder.toSourcePath(referenceMatcher.group()));
+            }
+            final Matcher packageMatcher = PACKAGE.matcher(content);
+            final Map<String, String> samePackage = classesByPackage.getOrDefault(packageMatcher.find() ? packageMatcher.group(1) : "",
+                                                                                  Collections.emptyMap());
+            final Matcher wordMatcher = WORD.matcher(content);
+            while (wordMatcher.find())
+            {
+                final String referenced = samePackage.get(wordMatcher.group());
+                if (referenced != null && !referenced.equals(path))
+                {
+                    fileReferences.add(referenced);
+                }
+            }
+            fileReferences.retainAll(contents.keySet());
+            references.put(path, fileReferences);
+            if (content.contains("@Test") && !content.contains("@Suite.SuiteClasses"))
+            {
+                testClasses.add(path);
+            }
+        });
+    }
+
+
+    /**
+     * @return the file itself and all files it references, directly or through other files
+     */
+    private Set<String> getClosure(final String file)
+    {
+        final Set<String> closure = new HashSet<>();
+        final Deque<String> pending = new ArrayDeque<>(Collections.singleton(file));
+        while (!pending.isEmpty())
+        {
+            final String current = pending.pop();
+            if (closure.add(current))
+            {
+                pending.addAll(references.getOrDefault(current, Collections.emptySet()));
+            }
+        }
+        return closure;
+    }
+
+
+    private static String toClassName(final String sourcePath)
+    {
+        return StringUtils.removeEnd(StringUtils.removeStart(sourcePath, ImpactRecorder.SOURCE_ROOT), ".java").replace('/', '.');
+    }
+
+
+    private static String toProjectPath(final Path file)
+    {
+        return Paths.get("").toAbsolutePath().relativize(file.toAbsolutePath()).toString().replace('\\', '/');
+    }
+
+
+    /**
+     * @return the files changed in the working tree compared with a revision, along with the new files not yet added to git, relative to
+     *         the project
+     */
+    private static List<String> getChangedFiles(final String revision) throws IOException
+    {
+        final List<String> files = runGit("diff", "--name-only", "--relative", revision);
+        files.addAll(runGit("ls-files", "--others", "--exclude-standard"));
+        return files;
+    }
+
+
+    /**
+     * @return the lines printed by a git command
+     */
+    private static List<String> runGit(final String... arguments) throws IOException
+    {
+        final List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(arguments));
+        final Process git = new ProcessBuilder(command).redirectErrorStream(true).start();
+        final List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(git.getInputStream(), StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                lines.add(line.trim());
+            }
+        }
+        try
+        {
+            if (git.waitFor() != 0)
+            {
+                throw new IOException(String.format("git %s failed: %s", arguments[0], String.join("\n", lines)));
+            }
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for git", e);
+        }
+        return lines;
+    }
+}
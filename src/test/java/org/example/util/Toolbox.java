@@ -1,21 +1,21 @@
 package org.example.util;
 
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalTime;
 
-import javax.imageio.ImageIO;
-
 import org.apache.commons.lang3.StringUtils;
 import org.junit.runner.Description;
+import org.openqa.selenium.HasCapabilities;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
-
-import io.qameta.allure.Allure;
+import org.openqa.selenium.WrapsDriver;
 
 
 public class Toolbox
@@ -55,9 +55,11 @@ public class Toolbox
             final String screenshotName = SCREENSHOTS_BASE_DIR.concat(description.getDisplayName()).concat(LocalTime.now().toString().replaceAll("(\\.)|(:)", "_")).concat(".png");
             try
             {
-                final BufferedImage screenshotImage = ImageIO.read(new ByteArrayInputStream(((TakesScreenshot)webDriver).getScreenshotAs(OutputType.BYTES)));
-                ImageIO.write(screenshotImage, "png", new File(screenshotName));
-                Allure.addAttachment(screenshotName, new ByteArrayInputStream(((TakesScreenshot)webDriver).getScreenshotAs(OutputType.BYTES)));
+                // The screenshot is streamed through files, so that its bytes are not kept in the heap
+                final Path screenshotFile = ((TakesScreenshot)webDriver).getScreenshotAs(OutputType.FILE).toPath();
+                Files.copy(screenshotFile, Paths.get(screenshotName), StandardCopyOption.REPLACE_EXISTING);
+                AttachmentSink.attach(screenshotName, "image/png", ".png", screenshotFile);
+                Files.deleteIfExists(screenshotFile);
             }
             catch (final IOException e)
             {
@@ -67,6 +69,23 @@ public class Toolbox
     }
 
 
+    /**
+     * @param webDriver a {@link WebDriver} instance, possibly wrapped (e.g. to record its commands)
+     * @return the name of the browser controlled by the driver (e.g. 'chrome', 'firefox', 'htmlunit'), or the class of the driver if it
+     *         does not report its capabilities
+     */
+    public static String getBrowserName(final WebDriver webDriver)
+    {
+        WebDriver current = webDriver;
+        while (!(current instanceof HasCapabilities) && current instanceof WrapsDriver)
+        {
+            current = ((WrapsDriver)current).getWrappedDriver();
+        }
+        return current instanceof HasCapabilities ? ((HasCapabilities)current).getCapabilities().getBrowserName()
+                                                  : webDriver.getClass().getSimpleName();
+    }
+
+
     /**
      * Creates the base directory for the error screenshots if it is not existent
      */
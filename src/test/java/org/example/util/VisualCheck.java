@@ -0,0 +1,438 @@
+package org.example.util;
+
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import io.qameta.allure.Allure;
+
+
+/**
+ * Compares screenshots of elements with stored baselines. The image is split in tiles and a perceptual (average) hash is computed for
+ * each tile from a subsampled decode of the screenshot, so only a fraction of the pixels is ever read. The baseline keeps its tile hashes
+ * next to the image, so it does not need to be decoded at all unless a tile hash differs. Only for such tiles the region is decoded from
+ * both images in full resolution and compared pixel by pixel.
+ * <p>
+ * Baselines are kept per browser (the browsers render fonts and controls differently) in {@code visual.baselines.dir}
+ * ({@code src/test/visual-baselines} by default, outside of the resources, so that a new baseline does not count as a change of the test
+ * resources), and are committed along with the tests. A comparison without a baseline fails, tests should skip the check instead when
+ * {@link this#hasBaselines(WebDriver, String...)} is {@code false}. The baselines are recorded (or re-recorded) from the current
+ * screenshots with the {@code visual.update} system property
+ *
+ * @author l.milov
+ */
+public class VisualCheck
+{
+
+    /** The directory of the baselines, relative to the project */
+    public static final String BASELINES_DIR_NAME = System.getProperty("visual.baselines.dir", "src/test/visual-baselines");
+    private static final Path BASELINES_DIR = Paths.get(BASELINES_DIR_NAME);
+    private static final Path CURRENT_DIR = Paths.get("target/visual");
+    private static final boolean IS_UPDATE = Boolean.getBoolean("visual.update");
+    /** The side of a tile in pixels, should be a multiple of 8 */
+    private static final int TILE_SIZE = Integer.getInteger("visual.tile.size", 32);
+    /** The side of the downscaled tile, from which the 64 bit hash is computed */
+    private static final int HASH_SIDE = 8;
+    /** The number of differing hash bits, up to which a tile is considered unchanged */
+    private static final int HASH_THRESHOLD = Integer.getInteger("visual.hash.threshold", 4);
+    /** The difference of the mean luminance of a tile, up to which a tile is considered unchanged (catches uniform color changes) */
+    private static final int LUMINANCE_THRESHOLD = 8;
+    /** The difference of a color channel, up to which two pixels are considered equal (absorbs anti-aliasing) */
+    private static final int CHANNEL_TOLERANCE = 16;
+    /** The share of differing pixels in a tile, up to which the tile is considered unchanged */
+    private static final double PIXEL_TOLERANCE = Double.parseDouble(System.getProperty("visual.pixel.tolerance", "0.01"));
+
+    private VisualCheck()
+    {
+    }
+
+
+    /**
+     * @param driver the driver of the browser for which the baselines are looked up
+     * @param names the names of the baselines
+     * @return {@code true} if all given baselines have been recorded for the browser, or if they are being recorded now (see
+     *         {@code visual.update}), {@code false} otherwise
+     */
+    public static boolean hasBaselines(final WebDriver driver, final String... names)
+    {
+        if (IS_UPDATE)
+        {
+            return true;
+        }
+        final Path baselineDir = BASELINES_DIR.resolve(Toolbox.getBrowserName(driver).toLowerCase(Locale.ROOT));
+        for (final String name : names)
+        {
+            if (!Files.exists(baselineDir.resolve(name + ".png")) || !Files.exists(baselineDir.resolve(name + ".tiles")))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Takes a screenshot of an element and compares it with the baseline with the same name, recorded in the same browser. On a mismatch
+     * the screenshot, the baseline and the list of changed tiles are attached to the report
+     *
+     * @param name the name of the baseline (e.g. 'exchange-rate-table-header')
+     * @param element the element to be compared
+     * @param driver the driver through which the element was found
+     * @return the result of the comparison
+     */
+    public static Result compare(final String name, final WebElement element, final WebDriver driver)
+    {
+        Objects.requireNonNull(element, "Parameter [element] cannot be null");
+        final String browserName = Toolbox.getBrowserName(driver).toLowerCase(Locale.ROOT);
+        try
+        {
+            final Path currentDir = CURRENT_DIR.resolve(browserName);
+            Files.createDirectories(currentDir);
+            final Path current = currentDir.resolve(name + ".png");
+            final Path screenshot = element.getScreenshotAs(OutputType.FILE).toPath();
+            Files.move(screenshot, current, StandardCopyOption.REPLACE_EXISTING);
+            return compare(name, browserName, current);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(String.format("Could not compare [%s] with its baseline", name), e);
+        }
+    }
+
+
+    /**
+     * Compares an image with the baseline with the same name
+     *
+     * @param name the name of the baseline
+     * @param browserName the name of the browser which has rendered the image (lower case)
+     * @param current the PNG image to be compared
+     * @return the result of the comparison
+     * @throws IOException if one of the images cannot be read or the baseline cannot be written
+     */
+    public static Result compare(final String name, final String browserName, final Path current) throws IOException
+    {
+        final Path baselineDir = BASELINES_DIR.resolve(browserName);
+        final Path baselineImage = baselineDir.resolve(name + ".png");
+        final Path baselineTiles = baselineDir.resolve(name + ".tiles");
+        final TileHashes currentHashes = TileHashes.compute(current);
+        if (IS_UPDATE)
+        {
+            Files.createDirectories(baselineDir);
+            Files.copy(current, baselineImage, StandardCopyOption.REPLACE_EXISTING);
+            Files.write(baselineTiles, currentHashes.toLines(), StandardCharsets.UTF_8);
+            Allure.step(String.format("Recorded the visual baseline [%s] for [%s]", name, browserName));
+            return new Result(name, true, Collections.emptyList());
+        }
+        if (!Files.exists(baselineImage) || !Files.exists(baselineTiles))
+        {
+            final Result result = new Result(name, false, Collections.singletonList(
+                String.format("there is no baseline for [%s] in [%s], record it with -Dvisual.update=true", browserName, baselineDir)));
+            AttachmentSink.attach(String.format("Visual current [%s]", name), "image/png", ".png", current);
+            return result;
+        }
+
+        final TileHashes baselineHashes = TileHashes.parse(Files.readAllLines(baselineTiles, StandardCharsets.UTF_8));
+        if (baselineHashes.width != currentHashes.width || baselineHashes.height != currentHashes.height
+            || baselineHashes.tileSize != currentHashes.tileSize)
+        {
+            final Result result = new Result(name, false, Collections.singletonList(
+                String.format("size changed from %dx%d to %dx%d", baselineHashes.width, baselineHashes.height, currentHashes.width,
+                              currentHashes.height)));
+            attachMismatch(result, baselineImage, current);
+            return result;
+        }
+
+        final List<String> changedTiles = new ArrayList<>();
+        for (int tile = 0; tile < currentHashes.hashes.length; tile++)
+        {
+            final boolean isHashChanged = Long.bitCount(currentHashes.hashes[tile] ^ baselineHashes.hashes[tile]) > HASH_THRESHOLD
+                                          || Math.abs(currentHashes.luminances[tile] - baselineHashes.luminances[tile]) > LUMINANCE_THRESHOLD;
+            if (!isHashChanged)
+            {
+                continue;
+            }
+            final Rectangle region = currentHashes.getTileRegion(tile);
+            final double difference = getPixelDifference(decode(baselineImage, region, 1), decode(current, region, 1));
+            if (difference > PIXEL_TOLERANCE)
+            {
+                changedTiles.add(String.format("tile at x=%d, y=%d (%dx%d): %.1f%% of the pixels differ", region.x, region.y, region.width,
+                                               region.height, difference * 100));
+            }
+        }
+        final Result result = new Result(name, changedTiles.isEmpty(), changedTiles);
+        if (!result.isMatching())
+        {
+            attachMismatch(result, baselineImage, current);
+        }
+        return result;
+    }
+
+
+    /**
+     * @return the share of the pixels which differ between two images of the same size
+     */
+    private static double getPixelDifference(final BufferedImage expected, final BufferedImage actual)
+    {
+        int differentPixels = 0;
+        for (int y = 0; y < expected.getHeight(); y++)
+        {
+            for (int x = 0; x < expected.getWidth(); x++)
+            {
+                final int expectedRgb = expected.getRGB(x, y);
+                final int actualRgb = actual.getRGB(x, y);
+                for (int shift = 0; shift <= 16; shift += 8)
+                {
+                    if (Math.abs((expectedRgb >> shift & 0xFF) - (actualRgb >> shift & 0xFF)) > CHANNEL_TOLERANCE)
+                    {
+                        differentPixels++;
+                        break;
+                    }
+                }
+            }
+        }
+        return (double)differentPixels / (expected.getWidth() * expected.getHeight());
+    }
+
+
+    /**
+     * Decodes (a region of) a PNG image
+     *
+     * @param image the image file
+     * @param region the region to be decoded, {@code null} for the whole image
+     * @param subsampling only every n-th pixel (in both directions) is decoded
+     * @return the decoded pixels
+     */
+    private static BufferedImage decode(final Path image, final Rectangle region, final int subsampling) throws IOException
+    {
+        try (ImageInputStream input = ImageIO.createImageInputStream(image.toFile()))
+        {
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext())
+            {
+                throw new IOException(String.format("[%s] is not a supported image", image));
+            }
+            final ImageReader reader = readers.next();
+            try
+            {
+                reader.setInput(input, true, true);
+                final ImageReadParam param = reader.getDefaultReadParam();
+                if (region != null)
+                {
+                    param.setSourceRegion(region);
+                }
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            }
+            finally
+            {
+                reader.dispose();
+            }
+        }
+    }
+
+
+    private static void attachMismatch(final Result result, final Path baselineImage, final Path current)
+    {
+        AttachmentSink.attach(String.format("Visual baseline [%s]", result.getName()), "image/png", ".png", baselineImage);
+        AttachmentSink.attach(String.format("Visual current [%s]", result.getName()), "image/png", ".png", current);
+        AttachmentSink.attachText(String.format("Visual differences [%s]", result.getName()), result.describe());
+    }
+
+
+    /**
+     * The result of a visual comparison
+     */
+    public static class Result
+    {
+        private final String name;
+        private final boolean isMatching;
+        private final List<String> differences;
+
+        private Result(final String name, final boolean isMatching, final List<String> differences)
+        {
+            this.name = name;
+            this.isMatching = isMatching;
+            this.differences = Collections.unmodifiableList(differences);
+        }
+
+
+        public String getName()
+        {
+            return name;
+        }
+
+
+        public boolean isMatching()
+        {
+            return isMatching;
+        }
+
+
+        public List<String> getDifferences()
+        {
+            return differences;
+        }
+
+
+        /**
+         * @return a human readable description of the differences, to be used as an assertion message
+         */
+        public String describe()
+        {
+            return isMatching
+                   ? String.format("[%s] matches its baseline", name)
+                   : String.format("[%s] does not match its baseline:%n%s", name, String.join(System.lineSeparator(), differences));
+        }
+    }
+
+
+    /**
+     * The perceptual hashes of all tiles of an image, row by row
+     */
+    private static class TileHashes
+    {
+        private final int width;
+        private final int height;
+        private final int tileSize;
+        private final long[] hashes;
+        private final int[] luminances;
+
+        private TileHashes(final int width, final int height, final int tileSize)
+        {
+            this.width = width;
+            this.height = height;
+            this.tileSize = tileSize;
+            final int tiles = getColumns() * ((height + tileSize - 1) / tileSize);
+            this.hashes = new long[tiles];
+            this.luminances = new int[tiles];
+        }
+
+
+        /**
+         * Computes the hashes from an image decoded with a subsampling, so that each tile is reduced to (at most) 8x8 pixels
+         */
+        private static TileHashes compute(final Path image) throws IOException
+        {
+            final int subsampling = Math.max(TILE_SIZE / HASH_SIDE, 1);
+            final int tileSide = TILE_SIZE / subsampling;
+            final BufferedImage sampled = decode(image, null, subsampling);
+            final int[] size = readSize(image);
+            final TileHashes tileHashes = new TileHashes(size[0], size[1], TILE_SIZE);
+            final int columns = tileHashes.getColumns();
+            for (int tile = 0; tile < tileHashes.hashes.length; tile++)
+            {
+                final int startX = tile % columns * tileSide;
+                final int startY = tile / columns * tileSide;
+                final int endX = Math.min(startX + tileSide, sampled.getWidth());
+                final int endY = Math.min(startY + tileSide, sampled.getHeight());
+                final int[] luminance = new int[(endX - startX) * (endY - startY)];
+                int sum = 0;
+                int index = 0;
+                for (int y = startY; y < endY; y++)
+                {
+                    for (int x = startX; x < endX; x++)
+                    {
+                        final int rgb = sampled.getRGB(x, y);
+                        luminance[index] = (299 * (rgb >> 16 & 0xFF) + 587 * (rgb >> 8 & 0xFF) + 114 * (rgb & 0xFF)) / 1000;
+                        sum += luminance[index++];
+                    }
+                }
+                final int mean = luminance.length == 0 ? 0 : sum / luminance.length;
+                long hash = 0;
+                for (int i = 0; i < luminance.length && i < Long.SIZE; i++)
+                {
+                    if (luminance[i] > mean)
+                    {
+                        hash |= 1L << i;
+                    }
+                }
+                tileHashes.hashes[tile] = hash;
+                tileHashes.luminances[tile] = mean;
+            }
+            return tileHashes;
+        }
+
+
+        /**
+         * @return the width and the height of an image, read from its header only
+         */
+        private static int[] readSize(final Path image) throws IOException
+        {
+            try (ImageInputStream input = ImageIO.createImageInputStream(image.toFile()))
+            {
+                final ImageReader reader = ImageIO.getImageReaders(input).next();
+                try
+                {
+                    reader.setInput(input, true, true);
+                    return new int[] {reader.getWidth(0), reader.getHeight(0)};
+                }
+                finally
+                {
+                    reader.dispose();
+                }
+            }
+        }
+
+
+        private static TileHashes parse(final List<String> lines)
+        {
+            final String[] header = lines.get(0).split(" ");
+            final TileHashes tileHashes = new TileHashes(Integer.parseInt(header[0]), Integer.parseInt(header[1]), Integer.parseInt(header[2]));
+            for (int tile = 0; tile < tileHashes.hashes.length; tile++)
+            {
+                final String[] values = lines.get(tile + 1).split(" ");
+                tileHashes.hashes[tile] = Long.parseUnsignedLong(values[0], 16);
+                tileHashes.luminances[tile] = Integer.parseInt(values[1]);
+            }
+            return tileHashes;
+        }
+
+
+        private List<String> toLines()
+        {
+            final List<String> lines = new ArrayList<>();
+            lines.add(String.format("%d %d %d", width, height, tileSize));
+            for (int tile = 0; tile < hashes.length; tile++)
+            {
+                lines.add(Long.toHexString(hashes[tile]) + " " + luminances[tile]);
+            }
+            return lines;
+        }
+
+
+        private int getColumns()
+        {
+            return (width + tileSize - 1) / tileSize;
+        }
+
+
+        private Rectangle getTileRegion(final int tile)
+        {
+            final int x = tile % getColumns() * tileSize;
+            final int y = tile / getColumns() * tileSize;
+            return new Rectangle(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y));
+        }
+    }
+}